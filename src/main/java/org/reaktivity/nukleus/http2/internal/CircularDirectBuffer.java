@@ -105,6 +105,13 @@ class CircularDirectBuffer
         return count;
     }
 
+    void clear()
+    {
+        start = 0;
+        end = 0;
+        count = 0;
+    }
+
     public String toString()
     {
         return "[capacity = " + capacity + " (start = " + start + " end = " + end + ")]";
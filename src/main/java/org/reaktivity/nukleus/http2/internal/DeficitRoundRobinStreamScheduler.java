@@ -0,0 +1,190 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.function.IntPredicate;
+
+import org.agrona.collections.Int2ObjectHashMap;
+
+/*
+ * Deficit round-robin over the ready streams, priority signals are ignored.
+ *
+ * Ready streams are kept in a circular list. The stream at the front of the
+ * list writes DATA while it has a positive deficit, every DATA frame is charged
+ * against the deficit. Once the deficit is used up, the stream gets a quantum of
+ * bytes for its next turn and moves to the back of the list. A frame may overrun
+ * the deficit, and the overrun is paid back in the next round.
+ *
+ * So in every round, a ready stream writes at least (quantum - max frame size)
+ * bytes, and at most (quantum + max frame size) bytes. A stream that becomes
+ * ready waits for at most one turn of each of the other ready streams.
+ */
+class DeficitRoundRobinStreamScheduler implements StreamScheduler
+{
+    private final int quantum;
+    private final Int2ObjectHashMap<Node> nodes;            // HTTP2 stream-id --> Node
+    private final Node head;                                // list of ready streams
+
+    private int readyCount;
+
+    DeficitRoundRobinStreamScheduler(int quantum)
+    {
+        assert quantum > 0;
+
+        this.quantum = quantum;
+        this.nodes = new Int2ObjectHashMap<>();
+        this.head = new Node(0);
+    }
+
+    int size()
+    {
+        return nodes.size();
+    }
+
+    @Override
+    public void add(int streamId)
+    {
+        if (!nodes.containsKey(streamId))
+        {
+            Node node = new Node(streamId);
+            nodes.put(streamId, node);
+        }
+    }
+
+    @Override
+    public void remove(int streamId)
+    {
+        Node node = nodes.remove(streamId);
+        if (node != null && node.ready)
+        {
+            unlink(node);
+        }
+    }
+
+    @Override
+    public void ready(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && !node.ready)
+        {
+            node.ready = true;
+            link(node);
+        }
+    }
+
+    @Override
+    public void blocked(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && node.ready)
+        {
+            node.ready = false;
+            unlink(node);
+
+            // unused deficit is not carried over while the stream is idle, but the overrun is
+            node.deficit = Math.min(node.deficit, 0);
+        }
+    }
+
+    @Override
+    public int select(IntPredicate writable)
+    {
+        boolean credited;
+        do
+        {
+            credited = false;
+            Node node = head.next;
+            for (int i = 0, count = readyCount; i < count; i++)
+            {
+                Node next = node.next;
+                if (node.deficit <= 0)
+                {
+                    // turn is over, the stream gets a quantum for its next turn
+                    node.deficit += quantum;
+                    unlink(node);
+                    link(node);
+                    credited = true;
+                }
+                else if (writable.test(node.streamId))
+                {
+                    return node.streamId;
+                }
+                node = next;
+            }
+        }
+        while (credited);
+
+        return 0;
+    }
+
+    @Override
+    public void charge(int streamId, int length)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null)
+        {
+            node.deficit -= length;
+        }
+    }
+
+    int deficit(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null ? 0 : node.deficit;
+    }
+
+    // appends to the back of the list
+    private void link(Node node)
+    {
+        node.next = head;
+        node.prev = head.prev;
+        head.prev.next = node;
+        head.prev = node;
+        readyCount++;
+    }
+
+    private void unlink(Node node)
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        readyCount--;
+    }
+
+    private static final class Node
+    {
+        final int streamId;
+        int deficit;
+        boolean ready;
+        Node prev;
+        Node next;
+
+        Node(int streamId)
+        {
+            this.streamId = streamId;
+            this.prev = this;
+            this.next = this;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[streamId=%d deficit=%d]", streamId, deficit);
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.function.IntPredicate;
+
+import org.agrona.collections.Int2ObjectHashMap;
+
+/*
+ * Serves the ready streams in the order they became ready, priority signals are
+ * ignored. A stream keeps writing until it is blocked, which is the cheapest
+ * selection and suits request/response traffic with small responses.
+ */
+class FifoStreamScheduler implements StreamScheduler
+{
+    private final Int2ObjectHashMap<Node> nodes;            // HTTP2 stream-id --> Node
+    private final Node head;                                // list of ready streams
+
+    FifoStreamScheduler()
+    {
+        this.nodes = new Int2ObjectHashMap<>();
+        this.head = new Node(0);
+    }
+
+    int size()
+    {
+        return nodes.size();
+    }
+
+    @Override
+    public void add(int streamId)
+    {
+        if (!nodes.containsKey(streamId))
+        {
+            Node node = new Node(streamId);
+            nodes.put(streamId, node);
+        }
+    }
+
+    @Override
+    public void remove(int streamId)
+    {
+        Node node = nodes.remove(streamId);
+        if (node != null && node.ready)
+        {
+            unlink(node);
+        }
+    }
+
+    @Override
+    public void ready(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && !node.ready)
+        {
+            node.ready = true;
+            link(node);
+        }
+    }
+
+    @Override
+    public void blocked(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && node.ready)
+        {
+            node.ready = false;
+            unlink(node);
+        }
+    }
+
+    @Override
+    public int select(IntPredicate writable)
+    {
+        for (Node node = head.next; node != head; node = node.next)
+        {
+            if (writable.test(node.streamId))
+            {
+                return node.streamId;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void charge(int streamId, int length)
+    {
+    }
+
+    // moves a ready stream to the back of the list
+    void rotate(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && node.ready)
+        {
+            unlink(node);
+            link(node);
+        }
+    }
+
+    private void link(Node node)
+    {
+        node.next = head;
+        node.prev = head.prev;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    private static void unlink(Node node)
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static final class Node
+    {
+        final int streamId;
+        boolean ready;
+        Node prev;
+        Node next;
+
+        Node(int streamId)
+        {
+            this.streamId = streamId;
+            this.prev = this;
+            this.next = this;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[streamId=%d ready=%b]", streamId, ready);
+        }
+    }
+
+}
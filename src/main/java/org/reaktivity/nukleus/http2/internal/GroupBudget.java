@@ -0,0 +1,135 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongFunction;
+
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.collections.LongHashSet;
+
+/*
+ * Application credit that is shared by the streams of a window group. The budget
+ * is owned by the runtime, streams only claim from it and give back what they don't
+ * use. A group that never had any budget is not managed by the runtime, and its
+ * streams are limited by their own credit. A stream that cannot claim enough credit
+ * waits on the group, and is retried once when the group gets a window. A waiter
+ * must be cancelled when its stream is closed. Waiter lists are recycled, so waiting
+ * doesn't allocate in the data path.
+ */
+final class GroupBudget
+{
+    static final int NO_BUDGET = -1;
+
+    private final LongFunction<IntUnaryOperator> claimer;
+    private final LongFunction<IntUnaryOperator> releaser;
+    private final LongHashSet budgeted;
+    private final Long2ObjectHashMap<List<Runnable>> waiters;
+    private final Deque<List<Runnable>> freeWaiters;
+
+    GroupBudget(LongFunction<IntUnaryOperator> claimer, LongFunction<IntUnaryOperator> releaser)
+    {
+        this.claimer = claimer;
+        this.releaser = releaser;
+        this.budgeted = new LongHashSet(0L);
+        this.waiters = new Long2ObjectHashMap<>();
+        this.freeWaiters = new ArrayDeque<>();
+    }
+
+    /*
+     * Claims the data length and the frame's padding together. A partial claim that
+     * doesn't cover more than the padding is given back.
+     *
+     * @return claimed data length, 0 if the group doesn't have enough credit,
+     *         NO_BUDGET if the runtime doesn't have a budget for the group
+     */
+    int claim(long groupId, int length, int padding)
+    {
+        int claimed = claimer.apply(groupId).applyAsInt(length + padding);
+        if (claimed > 0)
+        {
+            budgeted.add(groupId);
+        }
+        else if (!budgeted.contains(groupId))
+        {
+            // releasing nothing gives the group's budget without changing it
+            if (releaser.apply(groupId).applyAsInt(0) <= 0)
+            {
+                return NO_BUDGET;
+            }
+            budgeted.add(groupId);
+        }
+
+        if (claimed > padding)
+        {
+            return claimed - padding;
+        }
+        if (claimed > 0)
+        {
+            releaser.apply(groupId).applyAsInt(claimed);
+        }
+        return 0;
+    }
+
+    void await(long groupId, Runnable waiter)
+    {
+        List<Runnable> groupWaiters = waiters.get(groupId);
+        if (groupWaiters == null)
+        {
+            groupWaiters = freeWaiters.isEmpty() ? new ArrayList<>() : freeWaiters.poll();
+            waiters.put(groupId, groupWaiters);
+        }
+        groupWaiters.add(waiter);
+    }
+
+    void cancel(long groupId, Runnable waiter)
+    {
+        List<Runnable> groupWaiters = waiters.get(groupId);
+        if (groupWaiters != null && groupWaiters.remove(waiter) && groupWaiters.isEmpty())
+        {
+            waiters.remove(groupId);
+            freeWaiters.add(groupWaiters);
+        }
+    }
+
+    /*
+     * Runs the waiters of the group, they may wait again while running
+     */
+    void signal(long groupId)
+    {
+        List<Runnable> groupWaiters = waiters.remove(groupId);
+        if (groupWaiters != null)
+        {
+            for (int i = 0; i < groupWaiters.size(); i++)
+            {
+                groupWaiters.get(i).run();
+            }
+            groupWaiters.clear();
+            freeWaiters.add(groupWaiters);
+        }
+    }
+
+    int waiting(long groupId)
+    {
+        List<Runnable> groupWaiters = waiters.get(groupId);
+        return groupWaiters == null ? 0 : groupWaiters.size();
+    }
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import static org.reaktivity.nukleus.http2.internal.util.Fnv1a.hash64;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/*
+ * Small LRU cache of encoded header blocks of a connection, keyed by the bytes of
+ * the application's header list. Responses that repeat a header set get the
+ * previously encoded block copied instead of mapping and encoding every field.
+ *
+ * A block is valid only for the encoder's dynamic table it was encoded against,
+ * so every entry records the table version, and a block that changed the table
+ * (e.g. incremental indexing) is never stored.
+ *
+ * Storage of an entry is sized by the lengths stored in it, and only replaced
+ * by a larger one when a longer header list or block is stored.
+ */
+final class HeaderBlockCache
+{
+    static final int MAX_LENGTH = 1024;         // header lists and blocks larger than this aren't cached
+
+    private final long[] hashes;
+    private final long[] versions;
+    private final long[] used;                  // last use tick, 0 for an empty entry
+    private final int[] keyLengths;
+    private final int[] blockLengths;
+    private final MutableDirectBuffer[] keys;
+    private final MutableDirectBuffer[] blocks;
+    private long tick;
+
+    HeaderBlockCache(int capacity)
+    {
+        this.hashes = new long[capacity];
+        this.versions = new long[capacity];
+        this.used = new long[capacity];
+        this.keyLengths = new int[capacity];
+        this.blockLengths = new int[capacity];
+        this.keys = new MutableDirectBuffer[capacity];
+        this.blocks = new MutableDirectBuffer[capacity];
+    }
+
+    /*
+     * @return index of the entry for the header list that was encoded with the table version
+     *         -1 otherwise
+     */
+    int lookup(DirectBuffer buffer, int offset, int length, long version)
+    {
+        if (used.length == 0 || length > MAX_LENGTH)
+        {
+            return -1;
+        }
+
+        int entry = find(buffer, offset, length, hash64(buffer, offset, length));
+        if (entry != -1 && versions[entry] == version)
+        {
+            used[entry] = ++tick;
+            return entry;
+        }
+        return -1;
+    }
+
+    DirectBuffer block(int entry)
+    {
+        return blocks[entry];
+    }
+
+    int blockLength(int entry)
+    {
+        return blockLengths[entry];
+    }
+
+    // Stores the encoded block of the header list, replacing the least recently used entry
+    void store(DirectBuffer buffer, int offset, int length, long version,
+               DirectBuffer block, int blockOffset, int blockLength)
+    {
+        if (used.length == 0 || length > MAX_LENGTH || blockLength > MAX_LENGTH)
+        {
+            return;
+        }
+
+        long hash = hash64(buffer, offset, length);
+        int entry = find(buffer, offset, length, hash);
+        if (entry == -1)
+        {
+            entry = 0;
+            for (int i = 1; i < used.length; i++)
+            {
+                if (used[i] < used[entry])
+                {
+                    entry = i;
+                }
+            }
+            keys[entry] = storage(keys[entry], length);
+            keys[entry].putBytes(0, buffer, offset, length);
+            keyLengths[entry] = length;
+            hashes[entry] = hash;
+        }
+
+        blocks[entry] = storage(blocks[entry], blockLength);
+        blocks[entry].putBytes(0, block, blockOffset, blockLength);
+        blockLengths[entry] = blockLength;
+        versions[entry] = version;
+        used[entry] = ++tick;
+    }
+
+    private static MutableDirectBuffer storage(MutableDirectBuffer buffer, int length)
+    {
+        return buffer == null || buffer.capacity() < length ? new UnsafeBuffer(new byte[length]) : buffer;
+    }
+
+    private int find(DirectBuffer buffer, int offset, int length, long hash)
+    {
+        for (int i = 0; i < used.length; i++)
+        {
+            if (used[i] != 0 && hashes[i] == hash && keyLengths[i] == length && equals(keys[i], buffer, offset, length))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equals(DirectBuffer key, DirectBuffer buffer, int offset, int length)
+    {
+        int i = 0;
+        for (; i + 8 <= length; i += 8)
+        {
+            if (key.getLong(i) != buffer.getLong(offset + i))
+            {
+                return false;
+            }
+        }
+        for (; i < length; i++)
+        {
+            if (key.getByte(i) != buffer.getByte(offset + i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
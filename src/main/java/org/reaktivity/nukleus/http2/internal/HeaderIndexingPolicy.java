@@ -0,0 +1,147 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.reaktivity.nukleus.http2.internal.types.stream.HpackLiteralHeaderFieldFW.LiteralType.INCREMENTAL_INDEXING;
+import static org.reaktivity.nukleus.http2.internal.types.stream.HpackLiteralHeaderFieldFW.LiteralType.NEVER_INDEXED;
+import static org.reaktivity.nukleus.http2.internal.types.stream.HpackLiteralHeaderFieldFW.LiteralType.WITHOUT_INDEXING;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.http2.internal.types.stream.HpackContext;
+import org.reaktivity.nukleus.http2.internal.types.stream.HpackLiteralHeaderFieldFW.LiteralType;
+
+/*
+ * Decides which response header fields are added to the encoder's dynamic table
+ * (RFC 7541 6.2.1 incremental indexing). Fields that repeat across responses on a
+ * connection (content-type, server, cache-control, custom headers) are indexed, so
+ * that the later responses refer to them with a single byte.
+ *
+ * Fields whose values are usually unique per response are not indexed, since they
+ * would only evict the useful entries. Large fields are not indexed either, as one
+ * of them would flush most of the table.
+ *
+ * Sensitive fields (credentials, cookies) are never indexed (RFC 7541 7.1.3), so
+ * that intermediaries don't index them either.
+ */
+final class HeaderIndexingPolicy
+{
+    // static table indexes of the names whose values change with every response
+    private static final boolean[] UNIQUE_VALUES = new boolean[62];
+
+    static
+    {
+        UNIQUE_VALUES[4] = true;            // :path
+        UNIQUE_VALUES[21] = true;           // age
+        UNIQUE_VALUES[28] = true;           // content-length
+        UNIQUE_VALUES[30] = true;           // content-range
+        UNIQUE_VALUES[33] = true;           // date
+        UNIQUE_VALUES[34] = true;           // etag
+        UNIQUE_VALUES[36] = true;           // expires
+        UNIQUE_VALUES[44] = true;           // last-modified
+        UNIQUE_VALUES[46] = true;           // location
+    }
+
+    private final boolean enabled;
+    private final int maxValueLength;
+    private final DirectBuffer[] neverIndexed;
+    private final DirectBuffer[] uniqueValues;
+
+    /*
+     * @param enabled fields are indexed
+     * @param maxValueLength longer values are not indexed, 0 for no limit other than the table size
+     * @param neverIndexed comma separated names of the sensitive fields
+     * @param uniqueValues comma separated names, besides the standard ones, whose values change
+     *                     with every response (e.g. request ids)
+     */
+    HeaderIndexingPolicy(boolean enabled, int maxValueLength, String neverIndexed, String uniqueValues)
+    {
+        this.enabled = enabled;
+        this.maxValueLength = maxValueLength;
+        this.neverIndexed = names(neverIndexed);
+        this.uniqueValues = names(uniqueValues);
+    }
+
+    /*
+     * @param context encoder's context, the field is not in its tables
+     * @return representation of the field's literal
+     */
+    LiteralType literalType(HpackContext context, DirectBuffer name, DirectBuffer value)
+    {
+        if (contains(neverIndexed, name))
+        {
+            return NEVER_INDEXED;
+        }
+        return index(context, name, value) ? INCREMENTAL_INDEXING : WITHOUT_INDEXING;
+    }
+
+    /*
+     * @param context encoder's context, the field is not in its tables
+     * @return true if the field is to be added to the dynamic table
+     */
+    boolean index(HpackContext context, DirectBuffer name, DirectBuffer value)
+    {
+        if (!enabled)
+        {
+            return false;
+        }
+
+        int size = name.capacity() + value.capacity() + 32;
+        if (size > context.maxTableSize() / 4 || maxValueLength > 0 && value.capacity() > maxValueLength)
+        {
+            return false;
+        }
+
+        int nameIndex = context.index(name);
+        if (nameIndex != -1 && nameIndex < UNIQUE_VALUES.length)
+        {
+            return !UNIQUE_VALUES[nameIndex];
+        }
+        return !contains(uniqueValues, name);
+    }
+
+    private static boolean contains(DirectBuffer[] names, DirectBuffer name)
+    {
+        for (int i = 0; i < names.length; i++)
+        {
+            if (names[i].equals(name))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // HTTP2 header field names are lowercase
+    private static DirectBuffer[] names(String names)
+    {
+        List<DirectBuffer> buffers = new ArrayList<>();
+        for (String name : names.split(","))
+        {
+            String trimmed = name.trim().toLowerCase();
+            if (!trimmed.isEmpty())
+            {
+                buffers.add(new UnsafeBuffer(trimmed.getBytes(UTF_8)));
+            }
+        }
+        return buffers.toArray(new DirectBuffer[buffers.size()]);
+    }
+
+}
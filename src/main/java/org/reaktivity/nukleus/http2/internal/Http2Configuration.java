@@ -22,9 +22,69 @@ class Http2Configuration extends Configuration
     private static final String HTTP2_SERVER_CONCURRENT_STREAMS = "nukleus.http2.server.concurrent.streams";
     private static final int HTTP2_SERVER_CONCURRENT_STREAMS_DEFAULT = 100;
 
+    private static final String HTTP2_SERVER_MAX_HEADER_LIST_SIZE = "nukleus.http2.server.max.header.list.size";
+    private static final int HTTP2_SERVER_MAX_HEADER_LIST_SIZE_DEFAULT = 0;
+
     private static final String HTTP2_ACCESS_CONTROL_ALLOW_ORIGIN = "nukleus.http2.server.access.control.allow.origin";
     private static final boolean HTTP2_ACCESS_CONTROL_ALLOW_ORIGIN_DEFALUT = false;
 
+    private static final String HTTP2_SERVER_STREAM_SCHEDULER = "nukleus.http2.server.stream.scheduler";
+    private static final String HTTP2_SERVER_STREAM_SCHEDULER_DEFAULT = StreamSchedulerFactory.PRIORITY;
+
+    private static final String HTTP2_SERVER_STREAM_SCHEDULER_SOURCES = "nukleus.http2.server.stream.scheduler.sources";
+    private static final String HTTP2_SERVER_STREAM_SCHEDULER_SOURCES_DEFAULT = "";
+
+    private static final String HTTP2_SERVER_STREAM_QUANTUM = "nukleus.http2.server.stream.quantum";
+    private static final int HTTP2_SERVER_STREAM_QUANTUM_DEFAULT = 16384;
+
+    private static final String HTTP2_SERVER_WINDOW_UPDATE_MINIMUM = "nukleus.http2.server.window.update.minimum";
+    private static final int HTTP2_SERVER_WINDOW_UPDATE_MINIMUM_DEFAULT = 0;
+
+    private static final String HTTP2_SERVER_WRITE_CORK = "nukleus.http2.server.write.cork";
+    private static final boolean HTTP2_SERVER_WRITE_CORK_DEFAULT = false;
+
+    private static final String HTTP2_SERVER_FLUSH_THRESHOLD = "nukleus.http2.server.flush.threshold";
+    private static final int HTTP2_SERVER_FLUSH_THRESHOLD_DEFAULT = 50;
+
+    private static final String HTTP2_SERVER_FLUSH_MAX_HOLD = "nukleus.http2.server.flush.max.hold";
+    private static final int HTTP2_SERVER_FLUSH_MAX_HOLD_DEFAULT = 0;
+
+    private static final String HTTP2_SERVER_FLUSH_BYPASS_CONTROL = "nukleus.http2.server.flush.bypass.control";
+    private static final boolean HTTP2_SERVER_FLUSH_BYPASS_CONTROL_DEFAULT = true;
+
+    private static final String HTTP2_SERVER_FLUSH_BYPASS_LENGTH = "nukleus.http2.server.flush.bypass.length";
+    private static final int HTTP2_SERVER_FLUSH_BYPASS_LENGTH_DEFAULT = 0;
+
+    private static final String HTTP2_SERVER_INITIAL_WINDOW_SIZE = "nukleus.http2.server.initial.window.size";
+    private static final int HTTP2_SERVER_INITIAL_WINDOW_SIZE_DEFAULT = 0;
+
+    private static final String HTTP2_SERVER_CONNECTION_WINDOW_SIZE = "nukleus.http2.server.connection.window.size";
+    private static final int HTTP2_SERVER_CONNECTION_WINDOW_SIZE_DEFAULT = 0;
+
+    private static final String HTTP2_SERVER_HPACK_INDEXING = "nukleus.http2.server.hpack.indexing";
+    private static final boolean HTTP2_SERVER_HPACK_INDEXING_DEFAULT = false;
+
+    private static final String HTTP2_SERVER_HPACK_INDEXING_VALUE_MAX = "nukleus.http2.server.hpack.indexing.value.max";
+    private static final int HTTP2_SERVER_HPACK_INDEXING_VALUE_MAX_DEFAULT = 0;
+
+    private static final String HTTP2_SERVER_HPACK_INDEXING_UNIQUE = "nukleus.http2.server.hpack.indexing.unique";
+    private static final String HTTP2_SERVER_HPACK_INDEXING_UNIQUE_DEFAULT = "";
+
+    private static final String HTTP2_SERVER_HPACK_NEVER_INDEXED = "nukleus.http2.server.hpack.never.indexed";
+    private static final String HTTP2_SERVER_HPACK_NEVER_INDEXED_DEFAULT = "authorization,proxy-authorization,cookie,set-cookie";
+
+    private static final String HTTP2_SERVER_HPACK_HUFFMAN = "nukleus.http2.server.hpack.huffman";
+    private static final boolean HTTP2_SERVER_HPACK_HUFFMAN_DEFAULT = false;
+
+    private static final String HTTP2_SERVER_HPACK_ENCODER_TABLE_SIZE = "nukleus.http2.server.hpack.encoder.table.size";
+    private static final int HTTP2_SERVER_HPACK_ENCODER_TABLE_SIZE_DEFAULT = 4096;
+
+    private static final String HTTP2_SERVER_HEADER_BLOCK_CACHE_SIZE = "nukleus.http2.server.header.block.cache.size";
+    private static final int HTTP2_SERVER_HEADER_BLOCK_CACHE_SIZE_DEFAULT = 8;
+
+    private static final String HTTP2_SERVER_WINDOW_AUTOTUNE = "nukleus.http2.server.window.autotune";
+    private static final boolean HTTP2_SERVER_WINDOW_AUTOTUNE_DEFAULT = false;
+
     Http2Configuration(Configuration config)
     {
         super(config);
@@ -35,9 +95,128 @@ class Http2Configuration extends Configuration
         return getInteger(HTTP2_SERVER_CONCURRENT_STREAMS, HTTP2_SERVER_CONCURRENT_STREAMS_DEFAULT);
     }
 
+    // SETTINGS_MAX_HEADER_LIST_SIZE that is advertised and enforced on requests, 0 for unlimited
+    int serverMaxHeaderListSize()
+    {
+        return getInteger(HTTP2_SERVER_MAX_HEADER_LIST_SIZE, HTTP2_SERVER_MAX_HEADER_LIST_SIZE_DEFAULT);
+    }
+
     boolean accessControlAllowOrigin()
     {
         return getBoolean(HTTP2_ACCESS_CONTROL_ALLOW_ORIGIN, HTTP2_ACCESS_CONTROL_ALLOW_ORIGIN_DEFALUT);
     }
 
+    String serverStreamScheduler()
+    {
+        return getProperty(HTTP2_SERVER_STREAM_SCHEDULER, HTTP2_SERVER_STREAM_SCHEDULER_DEFAULT);
+    }
+
+    // stream schedulers for the connections accepted from sources, e.g. api:round-robin,media:drr
+    String serverStreamSchedulerSources()
+    {
+        return getProperty(HTTP2_SERVER_STREAM_SCHEDULER_SOURCES, HTTP2_SERVER_STREAM_SCHEDULER_SOURCES_DEFAULT);
+    }
+
+    // SETTINGS_INITIAL_WINDOW_SIZE, limited by the buffer slot capacity
+    int serverInitialWindowSize()
+    {
+        return getInteger(HTTP2_SERVER_INITIAL_WINDOW_SIZE, HTTP2_SERVER_INITIAL_WINDOW_SIZE_DEFAULT);
+    }
+
+    // connection-level receive window, announced after SETTINGS when larger than the default 65535
+    int serverConnectionWindowSize()
+    {
+        return getInteger(HTTP2_SERVER_CONNECTION_WINDOW_SIZE, HTTP2_SERVER_CONNECTION_WINDOW_SIZE_DEFAULT);
+    }
+
+    // response header fields are added to the encoder's dynamic table
+    boolean serverHpackIndexing()
+    {
+        return getBoolean(HTTP2_SERVER_HPACK_INDEXING, HTTP2_SERVER_HPACK_INDEXING_DEFAULT);
+    }
+
+    // response header values longer than this are not indexed, 0 for no limit other than the table size
+    int serverHpackIndexingValueMax()
+    {
+        return getInteger(HTTP2_SERVER_HPACK_INDEXING_VALUE_MAX, HTTP2_SERVER_HPACK_INDEXING_VALUE_MAX_DEFAULT);
+    }
+
+    // comma separated response header names whose values change with every response, e.g. x-request-id
+    String serverHpackIndexingUnique()
+    {
+        return getProperty(HTTP2_SERVER_HPACK_INDEXING_UNIQUE, HTTP2_SERVER_HPACK_INDEXING_UNIQUE_DEFAULT);
+    }
+
+    // comma separated response header names that are encoded as never indexed literals
+    String serverHpackNeverIndexed()
+    {
+        return getProperty(HTTP2_SERVER_HPACK_NEVER_INDEXED, HTTP2_SERVER_HPACK_NEVER_INDEXED_DEFAULT);
+    }
+
+    // response header literals are Huffman encoded when that is shorter
+    boolean serverHpackHuffman()
+    {
+        return getBoolean(HTTP2_SERVER_HPACK_HUFFMAN, HTTP2_SERVER_HPACK_HUFFMAN_DEFAULT);
+    }
+
+    // upper bound on the encoder's dynamic table size, whatever the peer allows
+    int serverHpackEncoderTableSize()
+    {
+        return getInteger(HTTP2_SERVER_HPACK_ENCODER_TABLE_SIZE, HTTP2_SERVER_HPACK_ENCODER_TABLE_SIZE_DEFAULT);
+    }
+
+    // encoded response header blocks that are kept per connection for the repeating header sets
+    int serverHeaderBlockCacheSize()
+    {
+        return getInteger(HTTP2_SERVER_HEADER_BLOCK_CACHE_SIZE, HTTP2_SERVER_HEADER_BLOCK_CACHE_SIZE_DEFAULT);
+    }
+
+    // connection window is tuned from the data received during PING round trips
+    boolean serverWindowAutotune()
+    {
+        return getBoolean(HTTP2_SERVER_WINDOW_AUTOTUNE, HTTP2_SERVER_WINDOW_AUTOTUNE_DEFAULT);
+    }
+
+    // WINDOW_UPDATE increments below this are coalesced with the later ones
+    int serverWindowUpdateMinimum()
+    {
+        return getInteger(HTTP2_SERVER_WINDOW_UPDATE_MINIMUM, HTTP2_SERVER_WINDOW_UPDATE_MINIMUM_DEFAULT);
+    }
+
+    // holds back network writes of a connection until the end of duty cycle
+    boolean serverWriteCork()
+    {
+        return getBoolean(HTTP2_SERVER_WRITE_CORK, HTTP2_SERVER_WRITE_CORK_DEFAULT);
+    }
+
+    // frames are held back while network budget is below this percentage of the initial network window
+    int serverFlushThreshold()
+    {
+        return getInteger(HTTP2_SERVER_FLUSH_THRESHOLD, HTTP2_SERVER_FLUSH_THRESHOLD_DEFAULT);
+    }
+
+    // max time in microseconds frames are held back, 0 to hold until network budget arrives
+    int serverFlushMaxHold()
+    {
+        return getInteger(HTTP2_SERVER_FLUSH_MAX_HOLD, HTTP2_SERVER_FLUSH_MAX_HOLD_DEFAULT);
+    }
+
+    // control frames (not HEADERS, PUSH_PROMISE) are not held back
+    boolean serverFlushBypassControl()
+    {
+        return getBoolean(HTTP2_SERVER_FLUSH_BYPASS_CONTROL, HTTP2_SERVER_FLUSH_BYPASS_CONTROL_DEFAULT);
+    }
+
+    // DATA frames up to this length are not held back
+    int serverFlushBypassLength()
+    {
+        return getInteger(HTTP2_SERVER_FLUSH_BYPASS_LENGTH, HTTP2_SERVER_FLUSH_BYPASS_LENGTH_DEFAULT);
+    }
+
+    // bytes of DATA per stream in a round of drr stream scheduler
+    int serverStreamQuantum()
+    {
+        return getInteger(HTTP2_SERVER_STREAM_QUANTUM, HTTP2_SERVER_STREAM_QUANTUM_DEFAULT);
+    }
+
 }
@@ -16,6 +16,7 @@
 package org.reaktivity.nukleus.http2.internal;
 
 import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.reaktivity.nukleus.buffer.BufferPool.NO_SLOT;
 import static org.reaktivity.nukleus.http2.internal.Http2Connection.State.CLOSED;
 import static org.reaktivity.nukleus.http2.internal.Http2Connection.State.HALF_CLOSED_REMOTE;
@@ -33,21 +34,21 @@ import static org.reaktivity.nukleus.http2.internal.types.stream.HpackLiteralHea
 import static org.reaktivity.nukleus.http2.internal.types.stream.Http2PrefaceFW.PRI_REQUEST;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.reaktivity.nukleus.function.MessageConsumer;
 import org.reaktivity.nukleus.function.MessageFunction;
 import org.reaktivity.nukleus.function.MessagePredicate;
+import org.reaktivity.nukleus.http2.internal.types.Flyweight;
 import org.reaktivity.nukleus.http2.internal.types.HttpHeaderFW;
 import org.reaktivity.nukleus.http2.internal.types.ListFW;
 import org.reaktivity.nukleus.http2.internal.types.OctetsFW;
@@ -64,6 +65,7 @@ import org.reaktivity.nukleus.http2.internal.types.stream.HpackHeaderBlockFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.HpackHeaderFieldFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.HpackHuffman;
 import org.reaktivity.nukleus.http2.internal.types.stream.HpackLiteralHeaderFieldFW;
+import org.reaktivity.nukleus.http2.internal.types.stream.HpackLiteralHeaderFieldFW.LiteralType;
 import org.reaktivity.nukleus.http2.internal.types.stream.HpackStringFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2DataExFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2DataFW;
@@ -78,7 +80,6 @@ import org.reaktivity.nukleus.route.RouteManager;
 
 final class Http2Connection
 {
-    private static final Map<String, String> EMPTY_HEADERS = Collections.emptyMap();
 
     ServerStreamFactory factory;
     private DecoderState decoderState;
@@ -107,7 +108,17 @@ final class Http2Connection
     final long sourceOutputEstId;
     private final HpackContext decodeContext;
     private final HpackContext encodeContext;
+    private final int encodeTableSizeMax;
+    private int encodeTableSizeUpdate = -1;         // smallest table size since the last header block
+    private boolean encodeQueued;                   // header block may be dropped before it is written
+    private final HeaderBlockCache headerBlockCache;
     private final MessageFunction<RouteFW> wrapRoute;
+    private final MessagePredicate routeFilter;
+    private final Predicate<HttpHeaderFW> routeHeaderMissing;
+    private final Predicate<HttpHeaderFW> routeHeaderMatches;
+    private final StringFW sourceNameRO;
+    private ListFW<HttpHeaderFW> requestHeaders;    // request headers that are matched by routeFilter
+    private HttpHeaderFW routeHeader;               // route header that is matched by routeHeaderMatches
 
     final long networkReplyGroupId;
 
@@ -124,10 +135,22 @@ final class Http2Connection
     Settings remoteSettings;
     private boolean expectContinuation;
     private int expectContinuationStreamId;
+    private boolean headersPriority;
+    private int headersParentStreamId;
+    private int headersWeight;
+    private boolean headersExclusive;
     private boolean expectDynamicTableSizeUpdate = true;
     long http2OutWindow;
     long http2InWindow;
 
+    // WINDOW_UPDATE credit that is granted by the application, but not yet sent
+    private final int windowUpdateMinimum;
+    private long windowUpdateCredit;
+    private IntArrayList windowUpdateStreams;
+    private IntArrayList windowUpdateStreamsSwap;
+    private ReceiveWindowTuner windowTuner;
+    private long windowUpdateDebt;              // connection credit that is withheld to shrink the window
+
     private boolean prefaceAvailable;
     private boolean http2FrameAvailable;
     private final Consumer<HpackHeaderFieldFW> headerFieldConsumer;
@@ -138,33 +161,53 @@ final class Http2Connection
     RouteManager router;
     String sourceName;
 
-    Http2Connection(ServerStreamFactory factory, RouteManager router, long networkReplyId, MessageConsumer networkConsumer,
-                    MessageFunction<RouteFW> wrapRoute)
+    Http2Connection(ServerStreamFactory factory, RouteManager router, String sourceName, long networkReplyId,
+                    MessageConsumer networkConsumer, MessageFunction<RouteFW> wrapRoute)
     {
         this.factory = factory;
         this.router = router;
         this.wrapRoute = wrapRoute;
+        this.sourceName = sourceName;
+        this.routeFilter = this::routeMatches;
+        this.routeHeaderMissing = this::routeHeaderMissing;
+        this.routeHeaderMatches = this::routeHeaderMatches;
+        byte[] sourceNameBytes = new byte[sourceName.length() * 3 + 1];
+        this.sourceNameRO = new StringFW.Builder()
+                .wrap(new UnsafeBuffer(sourceNameBytes), 0, sourceNameBytes.length)
+                .set(sourceName, UTF_8)
+                .build();
         sourceOutputEstId = networkReplyId;
         http2Streams = new Int2ObjectHashMap<>();
         localSettings = new Settings();
         remoteSettings = new Settings();
         decodeContext = new HpackContext(localSettings.headerTableSize, false);
-        encodeContext = new HpackContext(remoteSettings.headerTableSize, true);
+        encodeTableSizeMax = Math.max(factory.config.serverHpackEncoderTableSize(), 0);
+        int encodeTableSize = Math.min(remoteSettings.headerTableSize, encodeTableSizeMax);
+        encodeContext = new HpackContext(encodeTableSize, true);
+        if (encodeTableSize != remoteSettings.headerTableSize)
+        {
+            encodeTableSizeUpdate = encodeTableSize;     // peer's decoder starts with the default size
+        }
+        headerBlockCache = new HeaderBlockCache(Math.max(factory.config.serverHeaderBlockCacheSize(), 0));
         http2Writer = factory.http2Writer;
         writeScheduler = new Http2WriteScheduler(this, networkConsumer, http2Writer, sourceOutputEstId);
         http2InWindow = localSettings.initialWindowSize;
         http2OutWindow = remoteSettings.initialWindowSize;
+        windowUpdateMinimum = factory.config.serverWindowUpdateMinimum();
+        windowUpdateStreams = new IntArrayList();
+        windowUpdateStreamsSwap = new IntArrayList();
         this.networkConsumer = networkConsumer;
         this.networkReplyGroupId = factory.supplyGroupId.getAsLong();
 
         BiConsumer<DirectBuffer, DirectBuffer> nameValue =
-                ((BiConsumer<DirectBuffer, DirectBuffer>)this::collectHeaders)
+                ((BiConsumer<DirectBuffer, DirectBuffer>)this::headerListSize)
                         .andThen(this::mapToHttp)
                         .andThen(this::validatePseudoHeaders)
                         .andThen(this::uppercaseHeaders)
                         .andThen(this::connectionHeaders)
                         .andThen(this::contentLengthHeader)
-                        .andThen(this::teHeader);
+                        .andThen(this::teHeader)
+                        .andThen(this::priorityHeader);
 
         Consumer<HpackHeaderFieldFW> consumer = this::validateHeaderFieldType;
         consumer = consumer.andThen(this::dynamicTableSizeUpdate);
@@ -175,11 +218,13 @@ final class Http2Connection
             long streamId)
     {
         factory.doReset(networkConsumer, streamId);
+        writeScheduler.abort();
         cleanConnection();
     }
 
     void cleanConnection()
     {
+        writeScheduler.close();
         releaseSlot();
         releaseHeadersSlot();
         for(Http2Stream http2Stream : http2Streams.values())
@@ -194,10 +239,31 @@ final class Http2Connection
         this.sourceId = beginRO.streamId();
         this.authorization = beginRO.authorization();
         this.sourceRef = beginRO.sourceRef();
-        this.sourceName = beginRO.source().asString();
         this.decoderState = this::decodePreface;
-        initialSettings = new Settings(factory.config.serverConcurrentStreams(), 0);
-        writeScheduler.settings(initialSettings.maxConcurrentStreams, initialSettings.initialWindowSize);
+        // request data that is sent with the initial window is buffered in a stream's slot
+        int initialWindowSize = Math.min(factory.config.serverInitialWindowSize(), factory.httpWriterPool.slotCapacity());
+        initialSettings = new Settings(factory.config.serverConcurrentStreams(), Math.max(initialWindowSize, 0));
+        initialSettings.maxHeaderListSize = Math.max(factory.config.serverMaxHeaderListSize(), 0);
+        writeScheduler.settings(initialSettings.maxConcurrentStreams, initialSettings.initialWindowSize,
+                initialSettings.maxHeaderListSize);
+
+        // connection window can be larger than the default, but all the streams together cannot
+        // buffer more than a slot each
+        long connectionWindow = Math.min((long) factory.config.serverConnectionWindowSize(),
+                (long) initialSettings.maxConcurrentStreams * factory.httpWriterPool.slotCapacity());
+        if (connectionWindow > http2InWindow)
+        {
+            int update = (int) Math.min(connectionWindow - http2InWindow, Integer.MAX_VALUE - http2InWindow);
+            http2InWindow += update;
+            writeScheduler.windowUpdate(0, update);
+        }
+
+        if (factory.config.serverWindowAutotune())
+        {
+            long maxWindow = Math.min((long) initialSettings.maxConcurrentStreams * factory.httpWriterPool.slotCapacity(),
+                    Integer.MAX_VALUE);
+            windowTuner = new ReceiveWindowTuner((int) http2InWindow, (int) maxWindow);
+        }
     }
 
     void handleData(DataFW dataRO)
@@ -210,17 +276,93 @@ final class Http2Connection
         {
             offset += decoderState.decode(dataRO.buffer(), offset, limit);
         }
+
+        flushWindowUpdates();
+
+        if (windowTuner != null && windowTuner.ping(System.nanoTime()))
+        {
+            writeScheduler.ping(windowTuner.pingPayload());
+        }
+    }
+
+    /*
+     * Accumulates the credit for the connection and the stream, WINDOW_UPDATE frames are
+     * sent at the end of the current read or throttle cycle
+     */
+    void windowUpdate(Http2Stream stream, int credit)
+    {
+        windowUpdateCredit += credit;
+        if (stream.windowUpdateCredit == 0)
+        {
+            windowUpdateStreams.addInt(stream.http2StreamId);
+        }
+        stream.windowUpdateCredit += credit;
+    }
+
+    /*
+     * Sends at most one WINDOW_UPDATE for the connection, and one per stream. Credit below
+     * the minimum increment is held back unless the window advertised to the peer is low.
+     */
+    void flushWindowUpdates()
+    {
+        if (windowUpdateDebt > 0 && windowUpdateCredit > 0)
+        {
+            long withheld = Math.min(windowUpdateDebt, windowUpdateCredit);
+            windowUpdateDebt -= withheld;
+            windowUpdateCredit -= withheld;
+            http2InWindow -= withheld;
+        }
+
+        if (windowUpdateCredit > 0 && windowUpdate(http2InWindow, windowUpdateCredit))
+        {
+            writeScheduler.windowUpdate(0, (int) windowUpdateCredit);
+            windowUpdateCredit = 0;
+        }
+
+        if (windowUpdateStreams.size() > 0)
+        {
+            IntArrayList streams = windowUpdateStreams;
+            windowUpdateStreams = windowUpdateStreamsSwap;
+            windowUpdateStreamsSwap = streams;
+
+            for (int i = 0; i < streams.size(); i++)
+            {
+                int streamId = streams.getInt(i);
+                Http2Stream stream = http2Streams.get(streamId);
+                if (stream != null)
+                {
+                    if (windowUpdate(stream.http2InWindow, stream.windowUpdateCredit))
+                    {
+                        writeScheduler.windowUpdate(streamId, (int) stream.windowUpdateCredit);
+                        stream.windowUpdateCredit = 0;
+                    }
+                    else
+                    {
+                        windowUpdateStreams.addInt(streamId);
+                    }
+                }
+            }
+            streams.clear();
+        }
+    }
+
+    // @param window includes the credit that is not yet sent
+    private boolean windowUpdate(long window, long credit)
+    {
+        return credit >= windowUpdateMinimum || window - credit <= windowUpdateMinimum;
     }
 
     void handleAbort()
     {
         http2Streams.forEach((i, s) -> s.onAbort());
+        writeScheduler.abort();
         cleanConnection();
     }
 
     void handleReset(ResetFW reset)
     {
         http2Streams.forEach((i, s) -> s.onReset());
+        writeScheduler.abort();
         cleanConnection();
     }
 
@@ -229,8 +371,8 @@ final class Http2Connection
         decoderState = (b, o, l) -> o;
 
         http2Streams.forEach((i, s) -> s.onEnd());
-        writeScheduler.doEnd();
         cleanConnection();
+        writeScheduler.doEnd();
     }
 
     // Decodes client preface
@@ -463,6 +605,10 @@ final class Http2Connection
                     error(Http2ErrorCode.PROTOCOL_ERROR);
                     return false;
                 }
+                headersPriority = factory.headersRO.priority();
+                headersParentStreamId = parentStreamId;
+                headersWeight = factory.headersRO.weight();
+                headersExclusive = factory.headersRO.exclusive();
 
                 return http2HeadersAvailable(factory.headersRO.buffer(), factory.headersRO.dataOffset(),
                         factory.headersRO.dataLength(), factory.headersRO.endHeaders());
@@ -568,6 +714,9 @@ final class Http2Connection
             case WINDOW_UPDATE:
                 doWindow();
                 break;
+            case PRIORITY_UPDATE:
+                doPriorityUpdate();
+                break;
             default:
                 // Ignore and discard unknown frame
         }
@@ -621,6 +770,43 @@ final class Http2Connection
             streamError(streamId, Http2ErrorCode.PROTOCOL_ERROR);
             return;
         }
+
+        // 5.3.4 priority of closed streams need not be retained
+        if (state(streamId) != CLOSED)
+        {
+            writeScheduler.onHttp2Priority(streamId, parentStreamId, factory.priorityRO.weight(),
+                    factory.priorityRO.exclusive());
+        }
+    }
+
+    // RFC 9218 7.1
+    private void doPriorityUpdate()
+    {
+        if (factory.http2RO.streamId() != 0)
+        {
+            error(Http2ErrorCode.PROTOCOL_ERROR);
+            return;
+        }
+        if (factory.http2RO.payloadLength() < 4)
+        {
+            error(Http2ErrorCode.FRAME_SIZE_ERROR);
+            return;
+        }
+        factory.priorityUpdateRO.wrap(factory.http2RO.buffer(), factory.http2RO.offset(), factory.http2RO.limit());
+        int prioritizedStreamId = factory.priorityUpdateRO.prioritizedStream();
+        if (prioritizedStreamId == 0)
+        {
+            error(Http2ErrorCode.PROTOCOL_ERROR);
+            return;
+        }
+
+        if (state(prioritizedStreamId) != CLOSED)
+        {
+            int priority = UrgencyStreamScheduler.parsePriority(factory.priorityUpdateRO.buffer(),
+                    factory.priorityUpdateRO.priorityOffset(), factory.priorityUpdateRO.priorityLength());
+            writeScheduler.onHttp2Urgency(prioritizedStreamId, UrgencyStreamScheduler.urgency(priority),
+                    UrgencyStreamScheduler.incremental(priority));
+        }
     }
 
     private void doHeaders()
@@ -672,20 +858,26 @@ final class Http2Connection
                 error(headersContext.connectionError);
                 return;
             }
+            if (headersContext.headerListTooLarge)
+            {
+                errorResponse(streamId, "431");      // header list exceeds the advertised limit
+                return;
+            }
         }
 
-        RouteFW route = resolveTarget(sourceRef, sourceName, headersContext.headers);
+        HttpBeginExFW beginEx = factory.httpBeginExRW.build();
+        RouteFW route = resolveTarget(beginEx.headers());
         if (route == null)
         {
-            noRoute(streamId);
+            errorResponse(streamId, "404");      // no route for the request
         }
         else
         {
-            followRoute(streamId, state, route);
+            followRoute(streamId, state, route, beginEx);
         }
     }
 
-    private void followRoute(int streamId, State state, RouteFW route)
+    private void followRoute(int streamId, State state, RouteFW route, HttpBeginExFW beginEx)
     {
         final String applicationName = route.target().asString();
         final MessageConsumer applicationTarget = router.supplyTarget(applicationName);
@@ -693,9 +885,26 @@ final class Http2Connection
         Http2Stream stream = newStream(streamId, state, applicationTarget, httpWriter);
         final long targetRef = route.targetRef();
 
+        if (!factory.headersRO.endStream() && initialSettings.initialWindowSize > 0 && !stream.httpWriteScheduler.reserve())
+        {
+            // no buffer to absorb the request data that may be sent with the initial window
+            writeScheduler.rst(streamId, Http2ErrorCode.REFUSED_STREAM);
+            closeStream(stream);
+            return;
+        }
+
+        if (headersPriority)
+        {
+            writeScheduler.onHttp2Priority(streamId, headersParentStreamId, headersWeight, headersExclusive);
+        }
+        if (headersContext.priority != -1)
+        {
+            writeScheduler.onHttp2Urgency(streamId, UrgencyStreamScheduler.urgency(headersContext.priority),
+                    UrgencyStreamScheduler.incremental(headersContext.priority));
+        }
+
         stream.contentLength = headersContext.contentLength;
 
-        HttpBeginExFW beginEx = factory.httpBeginExRW.build();
         httpWriter.doHttpBegin(applicationTarget, stream.targetId, targetRef, stream.correlationId,
                 beginEx.buffer(), beginEx.offset(), beginEx.sizeof());
         router.setThrottle(applicationName, stream.targetId, stream::onThrottle);
@@ -706,12 +915,12 @@ final class Http2Connection
         }
     }
 
-    // No route for the HTTP2 request, send 404 on the corresponding HTTP2 stream
-    private void noRoute(int streamId)
+    // Sends an error response with the status on the corresponding HTTP2 stream
+    private void errorResponse(int streamId, String status)
     {
         ListFW<HttpHeaderFW> headers =
                 factory.headersRW.wrap(factory.errorBuf, 0, factory.errorBuf.capacity())
-                                 .item(b -> b.name(":status").value("404"))
+                                 .item(b -> b.name(":status").value(status))
                                  .build();
 
         writeScheduler.headers(streamId, Http2Flags.END_STREAM, headers);
@@ -759,6 +968,7 @@ final class Http2Connection
             }
             factory.correlations.remove(stream.targetId);
             http2Streams.remove(stream.http2StreamId);
+            writeScheduler.onHttp2StreamClosed(stream.http2StreamId);
             stream.close();
         }
     }
@@ -870,6 +1080,10 @@ final class Http2Connection
         }
         http2InWindow -= factory.http2RO.payloadLength();
         stream.http2InWindow -= factory.http2RO.payloadLength();
+        if (windowTuner != null)
+        {
+            windowTuner.onData(factory.http2RO.payloadLength());
+        }
 
         stream.totalData += factory.http2RO.payloadLength();
 
@@ -933,6 +1147,7 @@ final class Http2Connection
         {
             case HEADER_TABLE_SIZE:
                 remoteSettings.headerTableSize = value.intValue();
+                encodeTableSize((int) Math.min(value, encodeTableSizeMax));
                 break;
             case ENABLE_PUSH:
                 if (!(value == 0L || value == 1L))
@@ -970,6 +1185,7 @@ final class Http2Connection
                         error(Http2ErrorCode.FLOW_CONTROL_ERROR);
                         return;
                     }
+                    writeScheduler.onHttp2InitialWindow(http2Stream.http2StreamId);
                 }
                 break;
             case MAX_FRAME_SIZE:
@@ -981,7 +1197,7 @@ final class Http2Connection
                 remoteSettings.maxFrameSize = value.intValue();
                 break;
             case MAX_HEADER_LIST_SIZE:
-                remoteSettings.maxHeaderListSize = value.intValue();
+                remoteSettings.maxHeaderListSize = value;
                 break;
             default:
                 // Ignore the unkonwn setting
@@ -1007,6 +1223,33 @@ final class Http2Connection
         {
             writeScheduler.pingAck(factory.pingRO.payload(), 0, factory.pingRO.payload().capacity());
         }
+        else if (windowTuner != null)
+        {
+            long payload = factory.pingRO.payload().getLong(0);
+            tuneWindow(windowTuner.onPingAck(payload, System.nanoTime()));
+        }
+    }
+
+    /*
+     * A larger window is announced right away. The window cannot be taken back from
+     * the peer, so it shrinks by withholding the connection credit until it is paid off.
+     */
+    private void tuneWindow(int change)
+    {
+        if (change > 0)
+        {
+            long grow = change - Math.min(windowUpdateDebt, change);
+            windowUpdateDebt -= change - grow;
+            if (grow > 0)
+            {
+                http2InWindow += grow;
+                writeScheduler.windowUpdate(0, (int) grow);
+            }
+        }
+        else if (change < 0)
+        {
+            windowUpdateDebt -= change;
+        }
     }
 
     private State state(int streamId)
@@ -1033,35 +1276,76 @@ final class Http2Connection
         return State.IDLE;
     }
 
+    /*
+     * Resolves the route without allocating: the route's header conditions are matched
+     * against the request headers as they are encoded in the flyweights. A condition is
+     * met when any of the request headers has its name and value, so a repeated request
+     * header (e.g. two cookie fields) matches on any of its values, not only the last one.
+     */
     RouteFW resolveTarget(
-            long sourceRef,
-            String sourceName,
-            Map<String, String> headers)
+            ListFW<HttpHeaderFW> headers)
     {
-        MessagePredicate filter = (t, b, o, l) ->
-        {
-            RouteFW route = factory.routeRO.wrap(b, o, l);
-            OctetsFW extension = route.extension();
-            if (sourceRef == route.sourceRef() && sourceName.equals(route.source().asString()))
-            {
-                Map<String, String> routeHeaders;
-                if (extension.sizeof() == 0)
-                {
-                    routeHeaders = EMPTY_HEADERS;
-                }
-                else
-                {
-                    final HttpRouteExFW routeEx = extension.get(factory.httpRouteExRO::wrap);
-                    routeHeaders = new LinkedHashMap<>();
-                    routeEx.headers().forEach(h -> routeHeaders.put(h.name().asString(), h.value().asString()));
-                }
+        requestHeaders = headers;
+        RouteFW route = router.resolve(authorization, routeFilter, wrapRoute);
+        requestHeaders = null;
+        routeHeader = null;
+        return route;
+    }
 
-                return headers.entrySet().containsAll(routeHeaders.entrySet());
-            }
+    private boolean routeMatches(
+            int msgTypeId,
+            DirectBuffer buffer,
+            int index,
+            int length)
+    {
+        final RouteFW route = factory.routeRO.wrap(buffer, index, index + length);
+        if (sourceRef != route.sourceRef() || !equalBytes(sourceNameRO, route.source()))
+        {
             return false;
-        };
+        }
 
-        return router.resolve(authorization, filter, wrapRoute);
+        final OctetsFW extension = route.extension();
+        if (extension.sizeof() == 0)
+        {
+            return true;
+        }
+
+        final HttpRouteExFW routeEx = factory.httpRouteExRO.wrap(extension.buffer(), extension.offset(), extension.limit());
+        return !routeEx.headers().anyMatch(routeHeaderMissing);
+    }
+
+    // @return true if none of the request headers has the route header's name and value
+    private boolean routeHeaderMissing(HttpHeaderFW header)
+    {
+        routeHeader = header;
+        return !requestHeaders.anyMatch(routeHeaderMatches);
+    }
+
+    private boolean routeHeaderMatches(HttpHeaderFW header)
+    {
+        return equalBytes(routeHeader.name(), header.name()) && equalBytes(routeHeader.value(), header.value());
+    }
+
+    // Compares the encoded forms, both flyweights must be of the same type
+    private static boolean equalBytes(Flyweight fw1, Flyweight fw2)
+    {
+        int length = fw1.sizeof();
+        if (length != fw2.sizeof())
+        {
+            return false;
+        }
+        DirectBuffer buffer1 = fw1.buffer();
+        DirectBuffer buffer2 = fw2.buffer();
+        int offset1 = fw1.offset();
+        int offset2 = fw2.offset();
+        for (int i = 0; i < length; i++)
+        {
+            if (buffer1.getByte(offset1 + i) != buffer2.getByte(offset2 + i))
+            {
+                return false;
+            }
+        }
+        return true;
     }
 
     void handleWindow(WindowFW windowRO)
@@ -1133,10 +1417,14 @@ final class Http2Connection
 
     private void doPromisedRequest(int http2StreamId, ListFW<HttpHeaderFW> headers)
     {
-        Map<String, String> headersMap = new HashMap<>();
-        headers.forEach(
-                httpHeader -> headersMap.put(httpHeader.name().asString(), httpHeader.value().asString()));
-        RouteFW route = resolveTarget(sourceRef, sourceName, headersMap);
+        RouteFW route = resolveTarget(headers);
+        if (route == null)
+        {
+            // PUSH_PROMISE is already sent, so the promised stream gets 404 like a request
+            errorResponse(http2StreamId, "404");
+            return;
+        }
+
         final String applicationName = route.target().asString();
         final MessageConsumer applicationTarget = router.supplyTarget(applicationName);
         HttpWriter httpWriter = factory.httpWriter;
@@ -1175,7 +1463,7 @@ final class Http2Connection
 
     private void validateHeaderFieldType(HpackHeaderFieldFW hf)
     {
-        if (!headersContext.error() && hf.type() == UNKNOWN)
+        if (headersContext.decodable() && hf.type() == UNKNOWN)
         {
             headersContext.connectionError = Http2ErrorCode.COMPRESSION_ERROR;
         }
@@ -1183,7 +1471,7 @@ final class Http2Connection
 
     private void dynamicTableSizeUpdate(HpackHeaderFieldFW hf)
     {
-        if (!headersContext.error())
+        if (headersContext.decodable())
         {
             switch (hf.type())
             {
@@ -1279,6 +1567,15 @@ final class Http2Connection
         }
     }
 
+    // RFC 9218 4. priority header field, for e.g "u=5, i"
+    private void priorityHeader(DirectBuffer name, DirectBuffer value)
+    {
+        if (!headersContext.error() && name.equals(HpackContext.PRIORITY))
+        {
+            headersContext.priority = UrgencyStreamScheduler.parsePriority(value, 0, value.capacity());
+        }
+    }
+
     private void uppercaseHeaders(DirectBuffer name, DirectBuffer value)
     {
         if (!headersContext.error())
@@ -1293,15 +1590,17 @@ final class Http2Connection
         }
     }
 
-    // Collect headers into map to resolve target
-    // TODO avoid this
-    private void collectHeaders(DirectBuffer name, DirectBuffer value)
+    /*
+     * RFC 7540 6.5.2 Size of the header list, the rest of the fields are not processed once it
+     * exceeds the advertised limit. The fields are still decoded to keep the decoder's table in sync.
+     */
+    private void headerListSize(DirectBuffer name, DirectBuffer value)
     {
-        if (!headersContext.error())
+        headersContext.headerListSize += name.capacity() + value.capacity() + 32;
+        long maxHeaderListSize = initialSettings.maxHeaderListSize;
+        if (!headersContext.error() && maxHeaderListSize > 0 && headersContext.headerListSize > maxHeaderListSize)
         {
-            String nameStr = name.getStringWithoutLengthUtf8(0, name.capacity());
-            String valueStr = value.getStringWithoutLengthUtf8(0, value.capacity());
-            headersContext.headers.put(nameStr, valueStr);
+            headersContext.headerListTooLarge = true;
         }
     }
 
@@ -1319,7 +1618,7 @@ final class Http2Connection
         HpackHeaderFieldFW hf,
         BiConsumer<DirectBuffer, DirectBuffer> nameValue)
     {
-        if (!headersContext.error())
+        if (headersContext.decodable())
         {
             decodeHF(hf, nameValue);
         }
@@ -1370,14 +1669,12 @@ final class Http2Connection
                         value = valueRO.payload();
                         if (valueRO.huffman())
                         {
-                            MutableDirectBuffer dst = new UnsafeBuffer(new byte[4096]); // TODO
-                            int length = HpackHuffman.decode(value, dst);
-                            if (length == -1)
+                            value = decodeHuffman(value, factory.huffmanValueBuffer, factory.huffmanValueRO);
+                            if (value == null)
                             {
                                 headersContext.connectionError = Http2ErrorCode.COMPRESSION_ERROR;
                                 return;
                             }
-                            value = new UnsafeBuffer(dst, 0, length);
                         }
                         nameValue.accept(name, value);
                     }
@@ -1388,28 +1685,24 @@ final class Http2Connection
                         name = nameRO.payload();
                         if (nameRO.huffman())
                         {
-                            MutableDirectBuffer dst = new UnsafeBuffer(new byte[4096]); // TODO
-                            int length = HpackHuffman.decode(name, dst);
-                            if (length == -1)
+                            name = decodeHuffman(name, factory.huffmanNameBuffer, factory.huffmanNameRO);
+                            if (name == null)
                             {
                                 headersContext.connectionError = Http2ErrorCode.COMPRESSION_ERROR;
                                 return;
                             }
-                            name = new UnsafeBuffer(dst, 0, length);
                         }
 
                         HpackStringFW valueRO = literalRO.valueLiteral();
                         value = valueRO.payload();
                         if (valueRO.huffman())
                         {
-                            MutableDirectBuffer dst = new UnsafeBuffer(new byte[4096]); // TODO
-                            int length = HpackHuffman.decode(value, dst);
-                            if (length == -1)
+                            value = decodeHuffman(value, factory.huffmanValueBuffer, factory.huffmanValueRO);
+                            if (value == null)
                             {
                                 headersContext.connectionError = Http2ErrorCode.COMPRESSION_ERROR;
                                 return;
                             }
-                            value = new UnsafeBuffer(dst, 0, length);
                         }
                         nameValue.accept(name, value);
                     }
@@ -1417,26 +1710,105 @@ final class Http2Connection
                 }
                 if (literalRO.literalType() == INCREMENTAL_INDEXING)
                 {
-                    // make a copy for name and value as they go into dynamic table (outlives current frame)
-                    MutableDirectBuffer nameCopy = new UnsafeBuffer(new byte[name.capacity()]);
-                    nameCopy.putBytes(0, name, 0, name.capacity());
-                    MutableDirectBuffer valueCopy = new UnsafeBuffer(new byte[value.capacity()]);
-                    valueCopy.putBytes(0, value, 0, value.capacity());
-                    decodeContext.add(nameCopy, valueCopy);
+                    // name and value are copied into dynamic table (outlives current frame)
+                    decodeContext.add(name, value);
                 }
                 break;
         }
     }
 
 
+    /*
+     * Decodes into the factory's scratch buffer, so the decoded string is valid only
+     * while the current header field is being decoded
+     *
+     * @return decoded string, or null if there is an error
+     */
+    private static DirectBuffer decodeHuffman(DirectBuffer encoded, MutableDirectBuffer scratch, UnsafeBuffer decoded)
+    {
+        int length = HpackHuffman.decode(encoded, scratch);
+        if (length == -1)
+        {
+            return null;
+        }
+        decoded.wrap(scratch, 0, length);
+        return decoded;
+    }
+
+    /*
+     * RFC 7541 4.2 Resizes the encoder's dynamic table. The change is signalled at the
+     * start of the next header block.
+     */
+    private void encodeTableSize(int tableSize)
+    {
+        if (tableSize != encodeContext.maxTableSize())
+        {
+            encodeContext.updateSize(tableSize);
+            encodeTableSizeUpdate = encodeTableSizeUpdate == -1 ? tableSize : Math.min(encodeTableSizeUpdate, tableSize);
+        }
+    }
+
+    /*
+     * RFC 7541 4.2 If the table size is reduced and then increased between two header
+     * blocks, the smallest size is signalled first and then the final size.
+     */
+    private void tableSizeUpdate(HpackHeaderBlockFW.Builder builder)
+    {
+        if (encodeTableSizeUpdate != -1 && !encodeQueued)
+        {
+            int smallest = encodeTableSizeUpdate;
+            int tableSize = encodeContext.maxTableSize();
+            builder.header(b -> b.tableSize(smallest));
+            if (tableSize != smallest)
+            {
+                builder.header(b -> b.tableSize(tableSize));
+            }
+            encodeTableSizeUpdate = -1;
+        }
+    }
+
     void mapPushPromise(ListFW<HttpHeaderFW> httpHeaders, HpackHeaderBlockFW.Builder builder)
     {
+        tableSizeUpdate(builder);
         httpHeaders.forEach(h -> builder.header(b -> mapHeader(h, b)));
     }
 
+    /*
+     * A queued header block is dropped if its stream is closed before it is written. So it
+     * neither adds entries to the dynamic table nor carries the pending table size update,
+     * otherwise the peer's table would get out of sync with the encoder's.
+     */
+    void mapQueuedPushPromise(ListFW<HttpHeaderFW> httpHeaders, HpackHeaderBlockFW.Builder builder)
+    {
+        encodeQueued = true;
+        mapPushPromise(httpHeaders, builder);
+        encodeQueued = false;
+    }
+
+    void mapQueuedHeaders(ListFW<HttpHeaderFW> httpHeaders, HpackHeaderBlockFW.Builder builder)
+    {
+        encodeQueued = true;
+        mapHeaders(httpHeaders, builder);
+        encodeQueued = false;
+    }
+
     void mapHeaders(ListFW<HttpHeaderFW> httpHeaders, HpackHeaderBlockFW.Builder builder)
     {
+        // a pending table size update is not part of a cached block
+        boolean cacheable = encodeTableSizeUpdate == -1;
+        long version = encodeContext.version();
+        if (cacheable)
+        {
+            int entry = headerBlockCache.lookup(httpHeaders.buffer(), httpHeaders.offset(), httpHeaders.sizeof(), version);
+            if (entry != -1)
+            {
+                builder.block(headerBlockCache.block(entry), 0, headerBlockCache.blockLength(entry));
+                return;
+            }
+        }
+
         encodeHeadersContext.reset();
+        tableSizeUpdate(builder);
 
         httpHeaders.forEach(this::status)                       // checks if there is :status
                    .forEach(this::accessControlAllowOrigin)     // checks if there is access-control-allow-origin
@@ -1458,6 +1830,14 @@ final class Http2Connection
         {
             builder.header(b -> b.literal(l -> l.type(WITHOUT_INDEXING).name(20).value(DEFAULT_ACCESS_CONTROL_ALLOW_ORIGIN)));
         }
+
+        // block refers to the same table that it was encoded against, if it didn't add any entries
+        if (cacheable && !encodeQueued && encodeContext.version() == version)
+        {
+            HpackHeaderBlockFW block = builder.build();
+            headerBlockCache.store(httpHeaders.buffer(), httpHeaders.offset(), httpHeaders.sizeof(), version,
+                    block.buffer(), block.offset(), block.sizeof());
+        }
     }
 
     private void status(HttpHeaderFW httpHeader)
@@ -1570,22 +1950,31 @@ final class Http2Connection
     }
 
     // Building Literal representation of header field
-    // TODO dynamic table, huffman, never indexed
     private void buildLiteral(
             HpackLiteralHeaderFieldFW.Builder builder,
             HpackContext hpackContext)
     {
         int nameIndex = hpackContext.index(factory.nameRO);
-        builder.type(WITHOUT_INDEXING);
+        LiteralType type = factory.headerIndexing.literalType(hpackContext, factory.nameRO, factory.valueRO);
+        if (type == INCREMENTAL_INDEXING && encodeQueued)
+        {
+            type = WITHOUT_INDEXING;
+        }
+        builder.type(type);
         if (nameIndex != -1)
         {
             builder.name(nameIndex);
         }
         else
         {
-            builder.name(factory.nameRO, 0, factory.nameRO.capacity());
+            builder.name(factory.nameRO, 0, factory.nameRO.capacity(), factory.hpackHuffman);
+        }
+        builder.value(factory.valueRO, 0, factory.valueRO.capacity(), factory.hpackHuffman);
+
+        if (type == INCREMENTAL_INDEXING)
+        {
+            hpackContext.add(factory.nameRO, factory.valueRO);
         }
-        builder.value(factory.valueRO, 0, factory.valueRO.capacity());
     }
 
 
@@ -1603,16 +1992,38 @@ final class Http2Connection
             stream.applicationReplyThrottle = applicationReplyThrottle;
             stream.applicationReplyId = applicationReplyId;
 
+            HttpBeginExFW beginEx = extension.sizeof() > 0 ? extension.get(factory.beginExRO::wrap) : null;
+            long maxHeaderListSize = remoteSettings.maxHeaderListSize;
+            if (beginEx != null && maxHeaderListSize > 0 && responseHeaderListSize(beginEx.headers()) > maxHeaderListSize)
+            {
+                // RFC 7540 10.5.1 peer would reject the response headers, so reset the stream instead
+                doRstByUs(stream, Http2ErrorCode.INTERNAL_ERROR);
+                return;
+            }
+
             stream.sendHttpWindow();
 
-            if (extension.sizeof() > 0)
+            if (beginEx != null)
             {
-                HttpBeginExFW beginEx = extension.get(factory.beginExRO::wrap);
                 writeScheduler.headers(correlation.http2StreamId, Http2Flags.NONE, beginEx.headers());
             }
         }
     }
 
+    // RFC 7540 6.5.2 size of the response header list, before the connection-specific fields are removed
+    private long responseHeaderListSize(ListFW<HttpHeaderFW> headers)
+    {
+        encodeHeadersContext.headerListSize = 0;
+        headers.forEach(this::responseHeaderListSize);
+        return encodeHeadersContext.headerListSize;
+    }
+
+    private void responseHeaderListSize(HttpHeaderFW header)
+    {
+        // -1, -2 for length-prefixed name and value
+        encodeHeadersContext.headerListSize += header.name().sizeof() - 1 + header.value().sizeof() - 2 + 32;
+    }
+
     void handleHttpData(DataFW dataRO, Correlation correlation)
     {
         OctetsFW extension = dataRO.extension();
@@ -1626,8 +2037,10 @@ final class Http2Connection
             {
                 int promisedStreamId = correlation.promisedStreamIds.getAsInt();
                 Http2DataExFW dataEx = extension.get(factory.dataExRO::wrap);
-                writeScheduler.pushPromise(pushStreamId, promisedStreamId, dataEx.headers());
-                correlation.pushHandler.accept(promisedStreamId, dataEx.headers());
+                if (writeScheduler.pushPromise(pushStreamId, promisedStreamId, dataEx.headers()))
+                {
+                    correlation.pushHandler.accept(promisedStreamId, dataEx.headers());
+                }
             }
         }
         if (payload != null)
@@ -1690,18 +2103,22 @@ final class Http2Connection
     private static final class HeadersContext
     {
         Http2ErrorCode connectionError;
-        Map<String, String> headers = new HashMap<>();
         int method;
         int scheme;
         int path;
         boolean regularHeader;
         Http2ErrorCode streamError;
         long contentLength = -1;
+        int priority = -1;
+        long headerListSize;
+        boolean headerListTooLarge;
 
         void reset()
         {
+            headerListSize = 0;
+            headerListTooLarge = false;
+            priority = -1;
             connectionError = null;
-            headers.clear();
             method = 0;
             scheme = 0;
             path = 0;
@@ -1712,7 +2129,13 @@ final class Http2Connection
 
         boolean error()
         {
-            return streamError != null || connectionError != null;
+            return streamError != null || connectionError != null || headerListTooLarge;
+        }
+
+        // a header list that is too large is still decoded, to keep the decoder's table in sync
+        boolean decodable()
+        {
+            return streamError == null && connectionError == null;
         }
     }
 
@@ -1721,6 +2144,7 @@ final class Http2Connection
         boolean status;
         boolean accessControlAllowOrigin;
         final List<String> connectionHeaders = new ArrayList<>();
+        long headerListSize;
 
         void reset()
         {
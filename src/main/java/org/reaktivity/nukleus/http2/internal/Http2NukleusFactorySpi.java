@@ -36,7 +36,12 @@ public final class Http2NukleusFactorySpi implements NukleusFactorySpi
             NukleusBuilder builder)
     {
         Http2Configuration http2Config = new Http2Configuration(config);
-        ServerStreamFactoryBuilder streamFactoryBuilder = new ServerStreamFactoryBuilder(http2Config);
+        WriteFlusher writeFlusher = new WriteFlusher();
+        ServerStreamFactoryBuilder streamFactoryBuilder = new ServerStreamFactoryBuilder(http2Config, writeFlusher);
+        if (http2Config.serverWriteCork() || http2Config.serverFlushMaxHold() > 0)
+        {
+            builder.inject(writeFlusher);
+        }
         return builder.streamFactory(SERVER, streamFactoryBuilder)
                       .build();
     }
@@ -22,8 +22,8 @@ import org.reaktivity.nukleus.http2.internal.types.stream.Http2ErrorCode;
 import org.reaktivity.nukleus.http2.internal.types.stream.ResetFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.WindowFW;
 
+import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.LinkedList;
 
 import static org.reaktivity.nukleus.buffer.BufferPool.NO_SLOT;
 
@@ -39,14 +39,16 @@ class Http2Stream
     long http2OutWindow;
     long applicationReplyBudget;
     long http2InWindow;
+    long windowUpdateCredit;                // not yet sent to the peer
 
     long contentLength;
     long totalData;
 
     private int replySlot = NO_SLOT;
     CircularDirectBuffer replyBuffer;
-    Deque<WriteScheduler.Entry> replyQueue = new LinkedList<>();
+    Deque<WriteScheduler.Entry> replyQueue = new ArrayDeque<>();
     boolean endStream;
+    boolean windowPending;
 
     long totalOutData;
     private ServerStreamFactory factory;
@@ -192,6 +194,7 @@ class Http2Stream
                     long groupId = factory.windowRO.groupId();
 
                     httpWriteScheduler.onWindow(credit, padding, groupId);
+                    connection.flushWindowUpdates();
                 }
                 break;
             case ResetFW.TYPE_ID:
@@ -214,8 +217,12 @@ class Http2Stream
             replySlot = factory.http2ReplyPool.acquire(connection.sourceOutputEstId);
             if (replySlot != NO_SLOT)
             {
-                int capacity = factory.http2ReplyPool.buffer(replySlot).capacity();
-                replyBuffer = new CircularDirectBuffer(capacity);
+                if (replyBuffer == null)
+                {
+                    // reused across slot acquisitions, all slots have the same capacity
+                    int capacity = factory.http2ReplyPool.buffer(replySlot).capacity();
+                    replyBuffer = new CircularDirectBuffer(capacity);
+                }
             }
         }
         return replySlot != NO_SLOT ? factory.http2ReplyPool.buffer(replySlot) : null;
@@ -227,7 +234,7 @@ class Http2Stream
         {
             factory.http2ReplyPool.release(replySlot);
             replySlot = NO_SLOT;
-            replyBuffer = null;
+            replyBuffer.clear();
         }
     }
 
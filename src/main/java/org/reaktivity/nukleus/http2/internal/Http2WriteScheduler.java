@@ -15,6 +15,7 @@
  */
 package org.reaktivity.nukleus.http2.internal;
 
+import static org.reaktivity.nukleus.buffer.BufferPool.NO_SLOT;
 import static org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType.DATA;
 import static org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType.GO_AWAY;
 import static org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType.HEADERS;
@@ -24,30 +25,80 @@ import static org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType.
 import static org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType.SETTINGS;
 import static org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType.WINDOW_UPDATE;
 
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
-import java.util.LinkedList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.IntArrayList;
 import org.agrona.concurrent.UnsafeBuffer;
+import org.reaktivity.nukleus.buffer.BufferPool;
 import org.reaktivity.nukleus.function.MessageConsumer;
 import org.reaktivity.nukleus.http2.internal.types.Flyweight;
 import org.reaktivity.nukleus.http2.internal.types.HttpHeaderFW;
 import org.reaktivity.nukleus.http2.internal.types.ListFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.HpackHeaderBlockFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2ErrorCode;
+import org.reaktivity.nukleus.http2.internal.types.stream.Http2Flags;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType;
 
+/*
+ * Frames that cannot be written right away are queued as entries. An entry is a
+ * descriptor of the frame (frame type and its fields), the frame itself is built
+ * only when the entry is written. Entries are recycled via a free list, and the
+ * queues are array based, so buffering frames doesn't generate garbage:
+ *
+ * - DATA payload is kept in the stream's reply buffer
+ * - HEADERS, PUSH_PROMISE header blocks are encoded into one of the connection's
+ *   pooled header slots (the stream is reset when none has room). The frame is dropped if
+ *   its stream is closed before it is written, so the block is encoded without
+ *   changing the dynamic table
+ * - PING payload is kept in the entry
+ */
 public class Http2WriteScheduler implements WriteScheduler
 {
     private final Http2Connection connection;
     private final Http2Writer http2Writer;
     private final NukleusWriteScheduler writer;
     private final Deque<WriteScheduler.Entry> replyQueue;
+    private final StreamScheduler streamScheduler;
+    private final IntPredicate streamWritable;
+    private final IntPredicate streamBypass;
+    private final Runnable holdCheck;
+    private final IntArrayList windowStreams;               // streams that may need to send window to application
+    private final BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> mapHeaders;
+    private final BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> mapPushPromise;
+    private final BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> mapQueuedHeaders;
+    private final BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> mapQueuedPushPromise;
+    private final Consumer<HttpHeaderFW> headerLength;
+    private final MutableDirectBuffer pingBuffer;
+
+    private Entry freeEntries;
+    private int headersLength;
+
+    // header blocks of the buffered HEADERS, PUSH_PROMISE frames
+    private static final int MAX_HEADERS_SLOTS = 4;
+    private final int[] headersSlots = new int[MAX_HEADERS_SLOTS];
+    private final int[] headersSlotLimits = new int[MAX_HEADERS_SLOTS];
+    private final int[] headersSlotBlocks = new int[MAX_HEADERS_SLOTS];
+
+    // flush policy while network budget is below the threshold
+    private final boolean bypassControl;
+    private final int bypassLength;
+    private final long maxHoldNanos;
+    private long holdStart;
+    private boolean holdCheckPending;
 
     private boolean end;
     private boolean endSent;
     private int entryCount;
+    private boolean flushing;
 
     Http2WriteScheduler(
             Http2Connection connection,
@@ -58,27 +109,43 @@ public class Http2WriteScheduler implements WriteScheduler
         this.connection = connection;
         this.http2Writer = http2Writer;
         this.writer = new NukleusWriteScheduler(connection, networkConsumer, http2Writer, targetId);
-        this.replyQueue = new LinkedList<>();
+        this.replyQueue = new ArrayDeque<>();
+        this.streamScheduler = connection.factory.streamSchedulers.newStreamScheduler(connection.sourceName);
+        this.streamWritable = this::streamWritable;
+        this.streamBypass = this::streamBypass;
+        this.holdCheck = this::holdCheck;
+        this.windowStreams = new IntArrayList();
+        this.mapHeaders = connection::mapHeaders;
+        this.mapPushPromise = connection::mapPushPromise;
+        this.mapQueuedHeaders = connection::mapQueuedHeaders;
+        this.mapQueuedPushPromise = connection::mapQueuedPushPromise;
+        this.headerLength = h -> headersLength += h.name().sizeof() + h.value().sizeof() + 4;
+        this.pingBuffer = new UnsafeBuffer(new byte[8]);
+        Arrays.fill(headersSlots, NO_SLOT);
+
+        Http2Configuration config = connection.factory.config;
+        this.bypassControl = config.serverFlushBypassControl();
+        this.bypassLength = config.serverFlushBypassLength();
+        this.maxHoldNanos = MICROSECONDS.toNanos(config.serverFlushMaxHold());
     }
 
     @Override
     public boolean windowUpdate(int streamId, int update)
     {
-        int length = 4;                     // 4 window size increment
-        int sizeof = length + 9;            // +9 for HTTP2 framing
-        Http2FrameType type = WINDOW_UPDATE;
-        Http2Stream stream = stream(streamId);
-        Flyweight.Builder.Visitor visitor = http2Writer.visitWindowUpdate(streamId, update);
+        Entry entry = entry(stream(streamId), streamId, 4, WINDOW_UPDATE);   // 4 window size increment
+        entry.update = update;
+        write(entry);
+
+        return true;
+    }
+
+    @Override
+    public boolean ping(long payload)
+    {
+        Entry entry = entry(null, 0, 8, PING);
+        entry.ping = payload;
+        write(entry);
 
-        if (!buffered() && hasNukleusBudget(length))
-        {
-            http2(stream, type, sizeof, visitor);
-        }
-        else
-        {
-            Entry entry = new Entry(stream, streamId, length, type, visitor);
-            addEntry(entry);
-        }
         return true;
     }
 
@@ -87,23 +154,10 @@ public class Http2WriteScheduler implements WriteScheduler
     {
         assert length == 8;
 
-        int streamId = 0;
-        int sizeof = 9 + length;             // +9 for HTTP2 framing, +8 for a ping
-        Http2FrameType type = PING;
-
-        if (!buffered() && hasNukleusBudget(length))
-        {
-            Flyweight.Builder.Visitor visitor = http2Writer.visitPingAck(buffer, offset, length);
-            http2(null, type, sizeof, visitor);
-        }
-        else
-        {
-            MutableDirectBuffer copy = new UnsafeBuffer(new byte[8]);
-            copy.putBytes(0, buffer, offset, length);
-            Flyweight.Builder.Visitor visitor = http2Writer.visitPingAck(copy, 0, length);
-            Entry entry = new Entry(null, streamId, length, type, visitor);
-            addEntry(entry);
-        }
+        Entry entry = entry(null, 0, length, PING);
+        entry.flags = Http2Flags.ACK;
+        entry.ping = buffer.getLong(offset);
+        write(entry);
 
         return true;
     }
@@ -111,21 +165,10 @@ public class Http2WriteScheduler implements WriteScheduler
     @Override
     public boolean goaway(int lastStreamId, Http2ErrorCode errorCode)
     {
-        int streamId = 0;
-        int length = 8;                     // 8 for goaway payload
-        int sizeof = length + 9;            // +9 for HTTP2 framing
-        Flyweight.Builder.Visitor goaway = http2Writer.visitGoaway(lastStreamId, errorCode);
-        Http2FrameType type = GO_AWAY;
-
-        if (!buffered() && hasNukleusBudget(length))
-        {
-            http2(null, type, sizeof, goaway);
-        }
-        else
-        {
-            Entry entry = new Entry(null, streamId, length, type, goaway);
-            addEntry(entry);
-        }
+        Entry entry = entry(null, 0, 8, GO_AWAY);               // 8 for goaway payload
+        entry.lastStreamId = lastStreamId;
+        entry.errorCode = errorCode;
+        write(entry);
 
         return true;
     }
@@ -133,43 +176,22 @@ public class Http2WriteScheduler implements WriteScheduler
     @Override
     public boolean rst(int streamId, Http2ErrorCode errorCode)
     {
-        int length = 4;                     // 4 for RST_STREAM payload
-        int sizeof = length + 9;            // +9 for HTTP2 framing
-        Flyweight.Builder.Visitor visitor = http2Writer.visitRst(streamId, errorCode);
-        Http2Stream stream = stream(streamId);
-        Http2FrameType type = RST_STREAM;
-
-        if (!buffered() && hasNukleusBudget(length))
-        {
-            http2(stream, type, sizeof, visitor);
-        }
-        else
-        {
-            Entry entry = new Entry(stream, streamId, length, type, visitor);
-            addEntry(entry);
-        }
+        Entry entry = entry(stream(streamId), streamId, 4, RST_STREAM);     // 4 for RST_STREAM payload
+        entry.errorCode = errorCode;
+        write(entry);
 
         return true;
     }
 
     @Override
-    public boolean settings(int maxConcurrentStreams, int initialWindowSize)
+    public boolean settings(int maxConcurrentStreams, int initialWindowSize, long maxHeaderListSize)
     {
-        int streamId = 0;
-        int length = 6;                     // 6 for a setting
-        int sizeof = length + 9;            // +9 for HTTP2 framing
-        Flyweight.Builder.Visitor settings = http2Writer.visitSettings(maxConcurrentStreams, initialWindowSize);
-        Http2FrameType type = SETTINGS;
-
-        if (!buffered() && hasNukleusBudget(length))
-        {
-            http2(null, type, sizeof, settings);
-        }
-        else
-        {
-            Entry entry = new Entry(null, streamId, length, type, settings);
-            addEntry(entry);
-        }
+        int settingsCount = maxHeaderListSize > 0 ? 3 : 2;
+        Entry entry = entry(null, 0, 6 * settingsCount, SETTINGS);      // 6 for a setting
+        entry.maxConcurrentStreams = maxConcurrentStreams;
+        entry.initialWindowSize = initialWindowSize;
+        entry.maxHeaderListSize = maxHeaderListSize;
+        write(entry);
 
         return true;
     }
@@ -177,21 +199,9 @@ public class Http2WriteScheduler implements WriteScheduler
     @Override
     public boolean settingsAck()
     {
-        int streamId = 0;
-        int length = 0;
-        int sizeof = length + 9;                 // +9 for HTTP2 framing
-        Flyweight.Builder.Visitor visitor = http2Writer.visitSettingsAck();
-        Http2FrameType type = SETTINGS;
-
-        if (!buffered() && hasNukleusBudget(length))
-        {
-            http2(null, type, sizeof, visitor);
-        }
-        else
-        {
-            Entry entry = new Entry(null, streamId, length, type, visitor);
-            addEntry(entry);
-        }
+        Entry entry = entry(null, 0, 0, SETTINGS);
+        entry.flags = Http2Flags.ACK;
+        write(entry);
 
         return true;
     }
@@ -199,74 +209,115 @@ public class Http2WriteScheduler implements WriteScheduler
     @Override
     public boolean headers(int streamId, byte flags, ListFW<HttpHeaderFW> headers)
     {
-        MutableDirectBuffer copy = null;
-        int length = headersLength(headers);        // estimate only
-        int sizeof = 9 + headersLength(headers);    // +9 for HTTP2 framing
-        Http2FrameType type = HEADERS;
-        Http2Stream stream = stream(streamId);
+        Entry entry = entry(stream(streamId), streamId, headersLength(headers), HEADERS);    // estimate only
+        entry.flags = flags;
+        return headers(entry, headers, mapHeaders, mapQueuedHeaders);
+    }
 
-        if (buffered() || !hasNukleusBudget(length))
-        {
-            copy = new UnsafeBuffer(new byte[8192]);
-            connection.factory.blockRW.wrap(copy, 0, copy.capacity());
-            connection.mapHeaders(headers, connection.factory.blockRW);
-            HpackHeaderBlockFW block = connection.factory.blockRW.build();
-            length = block.sizeof();
-            sizeof = 9 + length;
-        }
+    @Override
+    public boolean pushPromise(int streamId, int promisedStreamId, ListFW<HttpHeaderFW> headers)
+    {
+        Entry entry = entry(stream(streamId), streamId, headersLength(headers), PUSH_PROMISE);   // estimate only
+        entry.promisedStreamId = promisedStreamId;
+        return headers(entry, headers, mapPushPromise, mapQueuedPushPromise);
+    }
 
-        if (buffered() || !hasNukleusBudget(length))
+    private boolean headers(
+            Entry entry,
+            ListFW<HttpHeaderFW> headers,
+            BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> mapper,
+            BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> queuedMapper)
+    {
+        if (!buffered() && hasNukleusBudget(entry.length))
         {
-            Flyweight.Builder.Visitor visitor = http2Writer.visitHeaders(streamId, flags, copy, 0, length);
-            Entry entry = new Entry(stream, streamId, length, type, visitor);
-            addEntry(entry);
+            // header block is encoded while writing the frame
+            entry.headers = headers;
+            entry.mapper = mapper;
+            writeNow(entry);
+            return true;
         }
-        else
+
+        MutableDirectBuffer blockBuffer = connection.factory.blockBuffer;
+        connection.factory.blockRW.wrap(blockBuffer, 0, blockBuffer.capacity());
+        queuedMapper.accept(headers, connection.factory.blockRW);
+        HpackHeaderBlockFW block = connection.factory.blockRW.build();
+        if (!storeHeaderBlock(entry, block.buffer(), block.offset(), block.sizeof()))
         {
-            Flyweight.Builder.Visitor visitor = http2Writer.visitHeaders(streamId, flags, headers, connection::mapHeaders);
-            http2(stream, type, sizeof, visitor);
+            Http2Stream stream = entry.stream;
+            int streamId = entry.streamId;
+            release(entry);
+            if (stream != null)
+            {
+                connection.doRstByUs(stream, Http2ErrorCode.INTERNAL_ERROR);
+            }
+            else
+            {
+                rst(streamId, Http2ErrorCode.INTERNAL_ERROR);
+            }
+            return false;
         }
 
+        write(entry);
         return true;
     }
 
-    @Override
-    public boolean pushPromise(int streamId, int promisedStreamId, ListFW<HttpHeaderFW> headers)
+    // Copies the header block into one of connection's header slots
+    private boolean storeHeaderBlock(Entry entry, DirectBuffer buffer, int offset, int length)
     {
-        MutableDirectBuffer copy = null;
-        int length = headersLength(headers);            // estimate only
-        int sizeof = 9 + 4 + length;                    // +9 for HTTP2 framing, +4 for promised stream id
-        Http2FrameType type = PUSH_PROMISE;
-        Http2Stream stream = stream(streamId);
-
-        if (buffered() || !hasNukleusBudget(length))
+        BufferPool pool = connection.factory.http2ReplyPool;
+        int index = -1;
+        for (int i = 0; i < MAX_HEADERS_SLOTS && index == -1; i++)
         {
-            copy = new UnsafeBuffer(new byte[8192]);
-            connection.factory.blockRW.wrap(copy, 0, copy.capacity());
-            connection.mapPushPromise(headers, connection.factory.blockRW);
-            HpackHeaderBlockFW block = connection.factory.blockRW.build();
-            length = block.sizeof();
-            sizeof = 9 + 4 + length;                    // +9 for HTTP2 framing, +4 for promised stream id
+            if (headersSlots[i] != NO_SLOT && headersSlotLimits[i] + length <= pool.slotCapacity())
+            {
+                index = i;
+            }
         }
-
-        if (buffered() || !hasNukleusBudget(length))
+        for (int i = 0; i < MAX_HEADERS_SLOTS && index == -1; i++)
         {
-            Flyweight.Builder.Visitor visitor =
-                    http2Writer.visitPushPromise(streamId, promisedStreamId, copy, 0, length);
-
-            Entry entry = new Entry(stream, streamId, length, type, visitor);
-            addEntry(entry);
+            if (headersSlots[i] == NO_SLOT && length <= pool.slotCapacity())
+            {
+                headersSlots[i] = pool.acquire(connection.sourceOutputEstId);
+                if (headersSlots[i] == NO_SLOT)
+                {
+                    break;
+                }
+                headersSlotLimits[i] = 0;
+                index = i;
+            }
         }
-        else
+
+        if (index == -1)
         {
-            Flyweight.Builder.Visitor pushPromise =
-                    http2Writer.visitPushPromise(streamId, promisedStreamId, headers, connection::mapPushPromise);
-            http2(stream, type, sizeof, pushPromise);
+            return false;
         }
 
+        MutableDirectBuffer slotBuffer = pool.buffer(headersSlots[index]);
+        slotBuffer.putBytes(headersSlotLimits[index], buffer, offset, length);
+        entry.headersSlot = index;
+        entry.payloadOffset = headersSlotLimits[index];
+        entry.length = length;
+        headersSlotLimits[index] += length;
+        headersSlotBlocks[index]++;
         return true;
     }
 
+    private void releaseHeaderBlock(Entry entry)
+    {
+        int index = entry.headersSlot;
+        if (index != -1)
+        {
+            entry.headersSlot = -1;
+            headersSlotBlocks[index]--;
+            if (headersSlotBlocks[index] == 0)
+            {
+                connection.factory.http2ReplyPool.release(headersSlots[index]);
+                headersSlots[index] = NO_SLOT;
+                headersSlotLimits[index] = 0;
+            }
+        }
+    }
+
     @Override
     public boolean data(int streamId, DirectBuffer buffer, int offset, int length)
     {
@@ -279,20 +330,24 @@ public class Http2WriteScheduler implements WriteScheduler
         {
             return true;
         }
-
+        windowPending(stream);
 
         if (!buffered() && !buffered(streamId) && hasNukleusBudget(length) && length <= connection.http2OutWindow &&
                 length <= stream.http2OutWindow)
         {
             // Send multiple DATA frames (because of max frame size)
+            Entry entry = entry(stream, streamId, 0, type);
             while (length > 0)
             {
                 int chunk = Math.min(length, connection.remoteSettings.maxFrameSize);
-                Flyweight.Builder.Visitor data = http2Writer.visitData(streamId, buffer, offset, chunk);
-                http2(stream, type, chunk + 9, data, false);
+                entry.length = chunk;
+                entry.payload = buffer;
+                entry.payloadOffset = offset;
+                http2(stream, type, chunk + 9, entry, false);
                 offset += chunk;
                 length -= chunk;
             }
+            release(entry);
             writer.flush();
         }
         else
@@ -310,9 +365,7 @@ public class Http2WriteScheduler implements WriteScheduler
             // Store as two contiguous parts (as it is circular buffer)
             int part1 = cdb.writeContiguous(replyBuffer, buffer, offset, length);
             assert part1 > 0;
-            Flyweight.Builder.Visitor data1 = http2Writer.visitData(streamId, buffer, offset, part1);
-            DataEntry entry1 = new DataEntry(stream, streamId, type, part1, data1);
-            addEntry(entry1);
+            addEntry(entry(stream, streamId, part1, type));
 
             int part2 = length - part1;
             if (part2 > 0)
@@ -325,9 +378,7 @@ public class Http2WriteScheduler implements WriteScheduler
                             length, part1, part2, cdb.size());
                     throw new RuntimeException(msg);
                 }
-                Flyweight.Builder.Visitor data2 = http2Writer.visitData(streamId, buffer, offset + part1, part2);
-                DataEntry entry2 = new DataEntry(stream, streamId, type, part2, data2);
-                addEntry(entry2);
+                addEntry(entry(stream, streamId, part2, type));
             }
             flush();
         }
@@ -339,7 +390,6 @@ public class Http2WriteScheduler implements WriteScheduler
     {
         int length = 0;
         int sizeof = length + 9;    // +9 for HTTP2 framing
-        Flyweight.Builder.Visitor data = http2Writer.visitDataEos(streamId);
         Http2FrameType type = DATA;
 
         Http2Stream stream = connection.http2Streams.get(streamId);
@@ -349,15 +399,18 @@ public class Http2WriteScheduler implements WriteScheduler
         }
         stream.endStream = true;
 
+        Entry entry = entry(stream, streamId, length, type);
+        entry.flags = Http2Flags.END_STREAM;
+
         if (!buffered() && !buffered(streamId) && hasNukleusBudget(length) && 0 <= connection.http2OutWindow &&
                 0 <= stream.http2OutWindow)
         {
-            http2(stream, type, sizeof, data);
+            http2(stream, type, sizeof, entry);
+            release(entry);
             connection.closeStream(stream);
         }
         else
         {
-            DataEosEntry entry = new DataEosEntry(stream, streamId, length, type, data);
             addEntry(entry);
         }
 
@@ -371,6 +424,25 @@ public class Http2WriteScheduler implements WriteScheduler
         return writer.fits(sizeof);
     }
 
+    // Writes the frame if there is budget, otherwise buffers it
+    private void write(Entry entry)
+    {
+        if (!buffered() && hasNukleusBudget(entry.length))
+        {
+            writeNow(entry);
+        }
+        else
+        {
+            addEntry(entry);
+        }
+    }
+
+    private void writeNow(Entry entry)
+    {
+        http2(entry.stream, entry.type, entry.length + 9, entry);
+        release(entry);
+    }
+
     private void addEntry(Entry entry)
     {
         if (entry.type == DATA)
@@ -378,11 +450,15 @@ public class Http2WriteScheduler implements WriteScheduler
             Deque<WriteScheduler.Entry> queue = queue(entry.stream);
             if (queue != null)
             {
+                entryCount++;
                 queue.add(entry);
+                streamScheduler.add(entry.streamId);
+                updateReady(entry.stream);
             }
         }
         else
         {
+            entryCount++;
             replyQueue.add(entry);
         }
     }
@@ -390,9 +466,9 @@ public class Http2WriteScheduler implements WriteScheduler
     // Since it is not encoding, this gives an approximate length of header block
     private int headersLength(ListFW<HttpHeaderFW> headers)
     {
-        int[] length = new int[1];
-        headers.forEach(x -> length[0] += x.name().sizeof() + x.value().sizeof() + 4);
-        return length[0];
+        headersLength = 0;
+        headers.forEach(headerLength);
+        return headersLength;
     }
 
     @Override
@@ -408,32 +484,83 @@ public class Http2WriteScheduler implements WriteScheduler
         }
     }
 
-    private void flush()
+    /*
+     * Releases the buffered frames without writing them, so that the header block slot
+     * goes back to the shared pool
+     */
+    @Override
+    public void close()
+    {
+        for (Http2Stream stream : connection.http2Streams.values())
+        {
+            drain(stream.replyQueue);
+        }
+        drain(replyQueue);
+        entryCount = 0;
+
+        for (int i = 0; i < MAX_HEADERS_SLOTS; i++)
+        {
+            assert headersSlotBlocks[i] == 0;
+            if (headersSlots[i] != NO_SLOT)
+            {
+                connection.factory.http2ReplyPool.release(headersSlots[i]);
+                headersSlots[i] = NO_SLOT;
+                headersSlotLimits[i] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void abort()
     {
-        if (connection.networkReplyBudget < connection.outWindowThreshold)
+        endSent = true;
+        writer.abort();
+    }
+
+    private void drain(Deque<WriteScheduler.Entry> queue)
+    {
+        Entry entry;
+        while ((entry = (Entry) queue.poll()) != null)
         {
-            // Instead of sending small updates, wait until a bigger window accumulates
-            return;
+            release(entry);
         }
+    }
 
+    /*
+     * Instead of sending small updates, frames are held back until a bigger network
+     * window accumulates. But control frames and small DATA frames may bypass the
+     * hold, and the held frames are written anyway once the max hold time elapses.
+     * Header blocks (HEADERS, PUSH_PROMISE) are held like DATA as they may be large.
+     */
+    private void flush()
+    {
+        boolean hold = connection.networkReplyBudget < connection.outWindowThreshold && !holdExpired();
+
+        flushing = true;
         Entry entry;
-        while ((entry = pop()) != null)
+        while ((entry = hold ? popBypass() : pop()) != null)
         {
+            Http2Stream stream = entry.stream;
             entry.write();
+            release(entry);
 
-            if (!buffered(entry.stream) && entry.stream != null)
+            if (!buffered(stream) && stream != null)
             {
-                entry.stream.releaseReplyBuffer();
+                stream.releaseReplyBuffer();
             }
+            updateReady(stream);
         }
+        flushing = false;
         writer.flush();
 
-        for(Http2Stream stream : connection.http2Streams.values())
+        if (hold)
         {
-            if (stream.applicationReplyThrottle != null)
-            {
-                stream.sendHttpWindow();
-            }
+            holdBack();
+        }
+        else
+        {
+            holdStart = 0;
+            sendHttpWindows();
         }
 
         if (entryCount == 0 && end && !endSent)
@@ -443,6 +570,54 @@ public class Http2WriteScheduler implements WriteScheduler
         }
     }
 
+    private void sendHttpWindows()
+    {
+        for (int i = 0; i < windowStreams.size(); i++)
+        {
+            Http2Stream stream = connection.http2Streams.get(windowStreams.getInt(i));
+            if (stream != null)
+            {
+                stream.windowPending = false;
+                if (stream.applicationReplyThrottle != null)
+                {
+                    stream.sendHttpWindow();
+                }
+            }
+        }
+        windowStreams.clear();
+    }
+
+    private void holdBack()
+    {
+        if (maxHoldNanos > 0 && entryCount > 0)
+        {
+            if (holdStart == 0)
+            {
+                holdStart = System.nanoTime();
+            }
+            if (!holdCheckPending)
+            {
+                holdCheckPending = true;
+                connection.factory.writeFlusher.register(holdCheck);
+            }
+        }
+    }
+
+    private boolean holdExpired()
+    {
+        return maxHoldNanos > 0 && holdStart != 0 && System.nanoTime() - holdStart >= maxHoldNanos;
+    }
+
+    // At the end of duty cycle, checks if the held frames are due
+    private void holdCheck()
+    {
+        holdCheckPending = false;
+        if (holdStart != 0 && entryCount > 0)
+        {
+            flush();
+        }
+    }
+
     @Override
     public void onHttp2Window()
     {
@@ -452,17 +627,67 @@ public class Http2WriteScheduler implements WriteScheduler
     @Override
     public void onHttp2Window(int streamId)
     {
+        Http2Stream stream = stream(streamId);
+        if (stream != null)
+        {
+            windowPending(stream);
+            updateReady(stream);
+        }
         flush();
     }
 
+    @Override
+    public void onHttp2InitialWindow(int streamId)
+    {
+        Http2Stream stream = stream(streamId);
+        if (stream != null)
+        {
+            windowPending(stream);
+            updateReady(stream);
+        }
+    }
+
     @Override
     public void onWindow()
     {
         flush();
     }
 
+    @Override
+    public void onHttp2Priority(int streamId, int parentStreamId, int weight, boolean exclusive)
+    {
+        if (stream(streamId) != null)
+        {
+            streamScheduler.add(streamId);
+        }
+        streamScheduler.priority(streamId, parentStreamId, weight, exclusive);
+    }
+
+    @Override
+    public void onHttp2Urgency(int streamId, int urgency, boolean incremental)
+    {
+        if (stream(streamId) != null)
+        {
+            streamScheduler.add(streamId);
+        }
+        streamScheduler.urgency(streamId, urgency, incremental);
+    }
+
+    @Override
+    public void onHttp2StreamClosed(int streamId)
+    {
+        streamScheduler.remove(streamId);
+
+        // the closed stream's frames don't hold up the frames queued behind them
+        if (!flushing && buffered())
+        {
+            flush();
+        }
+    }
+
     private Entry pop()
     {
+        dropClosed();
         if (buffered())
         {
             // There are entries on connection queue but cannot make progress, so
@@ -470,18 +695,93 @@ public class Http2WriteScheduler implements WriteScheduler
             return pop(null);
         }
 
-        // TODO Map#values may not iterate randomly, randomly pick a stream ??
-        // Select a frame on a HTTP2 stream that can be written
-        for(Http2Stream stream : connection.http2Streams.values())
+        // Select a frame on the highest priority HTTP2 stream that can be written
+        return popStream(streamWritable);
+    }
+
+    // frames that are written even when they are held back
+    private Entry popBypass()
+    {
+        dropClosed();
+        if (buffered())
         {
-            Entry entry = pop(stream);
-            if (entry != null)
+            Entry entry = (Entry) replyQueue.peek();
+            return bypassControl && isControl(entry.type) ? pop(null) : null;
+        }
+
+        return bypassLength > 0 ? popStream(streamBypass) : null;
+    }
+
+    private static boolean isControl(Http2FrameType type)
+    {
+        return type != HEADERS && type != PUSH_PROMISE && type != DATA;
+    }
+
+    // frames of a stream that is closed meanwhile are not written, see canStreamWrite()
+    private void dropClosed()
+    {
+        Entry entry;
+        while ((entry = (Entry) replyQueue.peek()) != null && !canStreamWrite(entry.stream, entry.type))
+        {
+            entryCount--;
+            release((Entry) replyQueue.poll());
+        }
+    }
+
+    private Entry popStream(IntPredicate writable)
+    {
+        int streamId = streamScheduler.select(writable);
+        if (streamId != 0)
+        {
+            Http2Stream stream = connection.http2Streams.get(streamId);
+            entryCount--;
+            return (Entry) stream.replyQueue.poll();
+        }
+
+        return null;
+    }
+
+    /*
+     * A stream is ready when it has buffered frames, and the first frame
+     * is not blocked by the stream window
+     */
+    private void updateReady(Http2Stream stream)
+    {
+        if (stream != null && stream.state != Http2Connection.State.CLOSED)
+        {
+            Entry entry = (Entry) stream.replyQueue.peek();
+            if (entry != null && (entry.length == 0 || stream.http2OutWindow > 0))
             {
-                return entry;
+                streamScheduler.ready(stream.http2StreamId);
+            }
+            else
+            {
+                streamScheduler.blocked(stream.http2StreamId);
             }
         }
+    }
 
-        return null;
+    // Window to the application is sent for the stream in the next flush
+    private void windowPending(Http2Stream stream)
+    {
+        if (!stream.windowPending)
+        {
+            stream.windowPending = true;
+            windowStreams.addInt(stream.http2StreamId);
+        }
+    }
+
+    private boolean streamWritable(int streamId)
+    {
+        Http2Stream stream = connection.http2Streams.get(streamId);
+        return stream != null && buffered(stream) && ((Entry) stream.replyQueue.peek()).fits();
+    }
+
+    private boolean streamBypass(int streamId)
+    {
+        Http2Stream stream = connection.http2Streams.get(streamId);
+        return stream != null && buffered(stream) && ((Entry) stream.replyQueue.peek()).length <= bypassLength &&
+                ((Entry) stream.replyQueue.peek()).fits();
     }
 
     private Entry pop(Http2Stream stream)
@@ -557,6 +857,8 @@ public class Http2WriteScheduler implements WriteScheduler
                 stream.http2OutWindow -= length;
                 connection.http2OutWindow -= length;
                 stream.totalOutData += length;
+                streamScheduler.charge(stream.http2StreamId, length);
+                windowPending(stream);
             }
             if (flush)
             {
@@ -577,111 +879,177 @@ public class Http2WriteScheduler implements WriteScheduler
         http2(stream, type, sizeofGuess, visitor, true);
     }
 
-    private class Entry implements WriteScheduler.Entry
+    private Entry entry(Http2Stream stream, int streamId, int length, Http2FrameType type)
     {
-        final int streamId;
-        final int length;
-        final int sizeof;
-        final Http2FrameType type;
-        final Flyweight.Builder.Visitor visitor;
-        final Http2Stream stream;
-
-        Entry(Http2Stream stream, int streamId, int length, Http2FrameType type,
-              Flyweight.Builder.Visitor visitor)
+        Entry entry = freeEntries;
+        if (entry == null)
         {
-            this.stream = stream;
-            this.streamId = streamId;
-            this.length = length;
-            this.sizeof = length + 9;
-            this.type = type;
-            this.visitor = visitor;
-
-            entryCount++;
+            entry = new Entry();
         }
-
-        boolean fits()
+        else
         {
-            return hasNukleusBudget(length);
+            freeEntries = entry.next;
+            entry.next = null;
         }
 
-        void write()
-        {
-            http2(stream, type, sizeof, visitor, false);
-        }
+        entry.stream = stream;
+        entry.streamId = streamId;
+        entry.length = length;
+        entry.type = type;
+        entry.flags = 0;
 
+        return entry;
     }
 
-    private class DataEosEntry extends Entry
+    private void release(Entry entry)
     {
-        DataEosEntry(Http2Stream stream, int streamId, int length, Http2FrameType type,
-                     Flyweight.Builder.Visitor visitor)
-        {
-            super(stream, streamId, length, type, visitor);
-        }
+        releaseHeaderBlock(entry);
 
-        @Override
-        void write()
-        {
-            super.write();
-            connection.closeStream(stream);
-        }
+        entry.stream = null;
+        entry.errorCode = null;
+        entry.headers = null;
+        entry.mapper = null;
+        entry.payload = null;
+
+        entry.next = freeEntries;
+        freeEntries = entry;
     }
 
-    private class DataEntry extends Entry
+    /*
+     * Descriptor of a HTTP2 frame, builds the frame when it is visited
+     */
+    private final class Entry implements WriteScheduler.Entry, Flyweight.Builder.Visitor
     {
-        DataEntry(
-                Http2Stream stream,
-                int streamId,
-                Http2FrameType type,
-                int length,
-                Flyweight.Builder.Visitor visitor)
+        private final Consumer<HpackHeaderBlockFW.Builder> mapHeaders = b -> this.mapper.accept(this.headers, b);
+
+        Http2Stream stream;
+        int streamId;
+        int length;
+        Http2FrameType type;
+        byte flags;                                 // HEADERS flags, or ACK, END_STREAM
+
+        int update;                                 // WINDOW_UPDATE
+        int lastStreamId;                           // GOAWAY
+        Http2ErrorCode errorCode;                   // RST_STREAM, GOAWAY
+        int maxConcurrentStreams;                   // SETTINGS
+        int initialWindowSize;                      // SETTINGS
+        long maxHeaderListSize;                     // SETTINGS
+        long ping;                                  // PING payload
+        int promisedStreamId;                       // PUSH_PROMISE
+
+        // HEADERS, PUSH_PROMISE that are encoded while writing
+        ListFW<HttpHeaderFW> headers;
+        BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> mapper;
+
+        // DATA payload, or encoded header block of HEADERS, PUSH_PROMISE
+        DirectBuffer payload;
+        int payloadOffset;
+        int headersSlot = -1;                       // index of connection's header slot with the block
+
+        Entry next;                                 // free list
+
+        boolean fits()
         {
-            super(stream, streamId, length, type, visitor);
+            if (type == DATA && length > 0)
+            {
+                // limit by nuklei window, http2 windows, peer's max frame size
+                int min = Math.min((int) connection.http2OutWindow, (int) stream.http2OutWindow);
+                min = Math.min(min, length);
+                min = Math.min(min, connection.remoteSettings.maxFrameSize);
+                min = Math.min(min, writer.remaining() - 9);
+
+                if (min > 0)
+                {
+                    int remaining = length - min;
+                    if (remaining > 0)
+                    {
+                        // split the entry, the second part stays on the queue
+                        length = min;
+                        Entry entry2 = entry(stream, streamId, remaining, type);
+                        stream.replyQueue.poll();
+                        stream.replyQueue.addFirst(entry2);
+                        stream.replyQueue.addFirst(this);
+                        entryCount++;
+                    }
+                }
 
-            assert streamId != 0;
+                return min > 0;
+            }
+
+            return hasNukleusBudget(length);
         }
 
-        boolean fits()
+        void write()
         {
-            // limit by nuklei window, http2 windows, peer's max frame size
-            int min = Math.min((int) connection.http2OutWindow, (int) stream.http2OutWindow);
-            min = Math.min(min, length);
-            min = Math.min(min, connection.remoteSettings.maxFrameSize);
-            min = Math.min(min, writer.remaining() - 9);
-
-            if (min > 0)
+            if (type == DATA && length > 0)
+            {
+                DirectBuffer read = stream.acquireReplyBuffer();
+                assert read != null;
+                payload = read;
+                payloadOffset = stream.replyBuffer.readOffset();
+                int readLength = stream.replyBuffer.read(length);
+                assert readLength == length;
+                http2(stream, type, readLength, this, false);
+            }
+            else
             {
-                int remaining = length - min;
-                if (remaining > 0)
+                http2(stream, type, length + 9, this, false);
+                if (type == DATA)
                 {
-                    entryCount--;
-                    stream.replyQueue.poll();
-                    DataEntry entry1 = new DataEntry(stream, streamId, type, min, visitor);
-                    DataEntry entry2 = new DataEntry(stream, streamId, type, remaining, visitor);
-
-                    stream.replyQueue.addFirst(entry2);
-                    stream.replyQueue.addFirst(entry1);
+                    connection.closeStream(stream);
                 }
             }
-
-            return min > 0;
         }
 
         @Override
-        void write()
+        public int visit(MutableDirectBuffer buffer, int offset, int limit)
+        {
+            switch (type)
+            {
+                case DATA:
+                    return (flags & Http2Flags.END_STREAM) != 0
+                            ? http2Writer.dataEos(buffer, offset, limit, streamId)
+                            : http2Writer.data(buffer, offset, limit, streamId, payload, payloadOffset, length);
+                case HEADERS:
+                    return headersSlot == -1
+                            ? http2Writer.headers(buffer, offset, limit, streamId, flags, mapHeaders)
+                            : http2Writer.headers(buffer, offset, limit, streamId, flags, headerBlock(), payloadOffset, length);
+                case PUSH_PROMISE:
+                    return headersSlot == -1
+                            ? http2Writer.pushPromise(buffer, offset, limit, streamId, promisedStreamId, mapHeaders)
+                            : http2Writer.pushPromise(buffer, offset, limit, streamId, promisedStreamId,
+                                    headerBlock(), payloadOffset, length);
+                case WINDOW_UPDATE:
+                    return http2Writer.windowUpdate(buffer, offset, limit, streamId, update);
+                case RST_STREAM:
+                    return http2Writer.rst(buffer, offset, limit, streamId, errorCode);
+                case GO_AWAY:
+                    return http2Writer.goaway(buffer, offset, limit, lastStreamId, errorCode);
+                case PING:
+                    pingBuffer.putLong(0, ping);
+                    return (flags & Http2Flags.ACK) != 0
+                            ? http2Writer.pingAck(buffer, offset, limit, pingBuffer, 0, 8)
+                            : http2Writer.ping(buffer, offset, limit, pingBuffer, 0, 8);
+                case SETTINGS:
+                    return (flags & Http2Flags.ACK) != 0
+                            ? http2Writer.settingsAck(buffer, offset, limit)
+                            : http2Writer.settings(buffer, offset, limit, maxConcurrentStreams, initialWindowSize,
+                                    maxHeaderListSize);
+                default:
+                    throw new IllegalStateException(String.format("Unexpected frame type=%s", type));
+            }
+        }
+
+        // pool wraps the same buffer for all its slots, so it is fetched again when it is used
+        private DirectBuffer headerBlock()
         {
-            DirectBuffer read = stream.acquireReplyBuffer();
-            assert read != null;
-            int offset = stream.replyBuffer.readOffset();
-            int readLength = stream.replyBuffer.read(length);
-            assert readLength == length;
-            Flyweight.Builder.Visitor visitor = http2Writer.visitData(streamId, read, offset, readLength);
-            http2(stream, type, readLength, visitor, false);
+            return connection.factory.http2ReplyPool.buffer(headersSlots[headersSlot]);
         }
 
+        @Override
         public String toString()
         {
-            return String.format("length=%d", length);
+            return String.format("%s [streamId=%d length=%d]", type, streamId, length);
         }
 
     }
@@ -15,14 +15,11 @@
  */
 package org.reaktivity.nukleus.http2.internal;
 
-import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.reaktivity.nukleus.function.MessageConsumer;
-import org.reaktivity.nukleus.http2.internal.types.Flyweight;
-import org.reaktivity.nukleus.http2.internal.types.HttpHeaderFW;
-import org.reaktivity.nukleus.http2.internal.types.ListFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.DataFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.EndFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.HpackHeaderBlockFW;
@@ -94,118 +91,160 @@ class Http2Writer
         target.accept(end.typeId(), end.buffer(), end.offset(), end.sizeof());
     }
 
-    Flyweight.Builder.Visitor visitSettings(
+    int settings(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
             int maxConcurrentStreams,
-            int initialWindowSize)
+            int initialWindowSize,
+            long maxHeaderListSize)
     {
-        return (buffer, offset, limit) ->
-                settingsRW.wrap(buffer, offset, limit)
-                          .maxConcurrentStreams(maxConcurrentStreams)
-                          .initialWindowSize(initialWindowSize)
-                          .build()
-                          .sizeof();
+        settingsRW.wrap(buffer, offset, limit)
+                  .maxConcurrentStreams(maxConcurrentStreams)
+                  .initialWindowSize(initialWindowSize);
+        if (maxHeaderListSize > 0)
+        {
+            settingsRW.maxHeaderListSize(maxHeaderListSize);
+        }
+        return settingsRW.build()
+                         .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitSettingsAck()
+    int settingsAck(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit)
     {
-        return (buffer, offset, limit) ->
-                settingsRW.wrap(buffer, offset, limit)
-                          .ack()
-                          .build()
-                          .sizeof();
+        return settingsRW.wrap(buffer, offset, limit)
+                         .ack()
+                         .build()
+                         .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitRst(
+    int rst(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
             int streamId,
             Http2ErrorCode errorCode)
     {
-        return (buffer, offset, limit) ->
-                http2ResetRW.wrap(buffer, offset, limit)
-                       .streamId(streamId)
+        return http2ResetRW.wrap(buffer, offset, limit)
+                           .streamId(streamId)
+                           .errorCode(errorCode)
+                           .build()
+                           .sizeof();
+    }
+
+    int goaway(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
+            int lastStreamId,
+            Http2ErrorCode errorCode)
+    {
+        return goawayRW.wrap(buffer, offset, limit)
+                       .lastStreamId(lastStreamId)
                        .errorCode(errorCode)
                        .build()
                        .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitGoaway(
-            int lastStreamId,
-            Http2ErrorCode errorCode)
+    int ping(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
+            DirectBuffer payloadBuffer,
+            int payloadOffset,
+            int payloadLength)
     {
-        return (buffer, offset, limit) ->
-                goawayRW.wrap(buffer, offset, limit)
-                        .lastStreamId(lastStreamId)
-                        .errorCode(errorCode)
-                        .build()
-                        .sizeof();
+        return pingRW.wrap(buffer, offset, limit)
+                     .payload(payloadBuffer, payloadOffset, payloadLength)
+                     .build()
+                     .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitPingAck(
-            DirectBuffer payloadBuffer, int payloadOffset, int payloadLength)
+    int pingAck(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
+            DirectBuffer payloadBuffer,
+            int payloadOffset,
+            int payloadLength)
     {
-        return (buffer, offset, limit) ->
-                pingRW.wrap(buffer, offset, limit)
-                      .ack()
-                      .payload(payloadBuffer, payloadOffset, payloadLength)
-                      .build()
-                      .sizeof();
+        return pingRW.wrap(buffer, offset, limit)
+                     .ack()
+                     .payload(payloadBuffer, payloadOffset, payloadLength)
+                     .build()
+                     .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitWindowUpdate(
+    int windowUpdate(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
             int streamId,
             int update)
     {
-        return (buffer, offset, limit) ->
-                http2WindowRW.wrap(buffer, offset, limit)
-                        .streamId(streamId)
-                        .size(update)
-                        .build()
-                        .sizeof();
+        return http2WindowRW.wrap(buffer, offset, limit)
+                            .streamId(streamId)
+                            .size(update)
+                            .build()
+                            .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitData(
+    int data(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
             int streamId,
             DirectBuffer payloadBuffer,
             int payloadOffset,
             int payloadLength)
     {
-        return (buffer, offset, limit) ->
-                http2DataRW.wrap(buffer, offset, limit)
-                           .streamId(streamId)
-                           .payload(payloadBuffer, payloadOffset, payloadLength)
-                           .build()
-                           .sizeof();
+        return http2DataRW.wrap(buffer, offset, limit)
+                          .streamId(streamId)
+                          .payload(payloadBuffer, payloadOffset, payloadLength)
+                          .build()
+                          .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitDataEos(int streamId)
+    int dataEos(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
+            int streamId)
     {
         assert streamId != 0;
 
-        return (buffer, offset, limit) ->
-                http2DataRW.wrap(buffer, offset, limit)
-                           .streamId(streamId)
-                           .endStream()
-                           .build()
-                           .sizeof();
+        return http2DataRW.wrap(buffer, offset, limit)
+                          .streamId(streamId)
+                          .endStream()
+                          .build()
+                          .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitHeaders(
+    int headers(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
             int streamId,
             byte flags,
-            ListFW<HttpHeaderFW> headers,
-            BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> builder)
+            Consumer<HpackHeaderBlockFW.Builder> mutator)
     {
         byte headersFlags = (byte) (flags | Http2Flags.END_HEADERS);
 
-        return (buffer, offset, limit) ->
-                http2HeadersRW.wrap(buffer, offset, limit)
-                              .streamId(streamId)
-                              .flags(headersFlags)
-                              .headers(b -> builder.accept(headers, b))
-                              .build()
-                              .sizeof();
+        return http2HeadersRW.wrap(buffer, offset, limit)
+                             .streamId(streamId)
+                             .flags(headersFlags)
+                             .headers(mutator)
+                             .build()
+                             .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitHeaders(
+    int headers(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
             int streamId,
             byte flags,
             DirectBuffer srcBuffer,
@@ -215,32 +254,36 @@ class Http2Writer
         assert streamId != 0;
 
         byte headersFlags = (byte) (flags | Http2Flags.END_HEADERS);
-        return (buffer, offset, limit) ->
-                http2HeadersRW.wrap(buffer, offset, limit)
-                              .streamId(streamId)
-                              .flags(headersFlags)
-                              .payload(srcBuffer, srcOffset, srcLength)
-                              .build()
-                              .sizeof();
+
+        return http2HeadersRW.wrap(buffer, offset, limit)
+                             .streamId(streamId)
+                             .flags(headersFlags)
+                             .payload(srcBuffer, srcOffset, srcLength)
+                             .build()
+                             .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitPushPromise(
+    int pushPromise(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
             int streamId,
             int promisedStreamId,
-            ListFW<HttpHeaderFW> headers,
-            BiConsumer<ListFW<HttpHeaderFW>, HpackHeaderBlockFW.Builder> builder)
+            Consumer<HpackHeaderBlockFW.Builder> mutator)
     {
-        return (buffer, offset, limit) ->
-                pushPromiseRW.wrap(buffer, offset, limit)
-                             .streamId(streamId)
-                             .promisedStreamId(promisedStreamId)
-                             .endHeaders()
-                             .headers(b -> builder.accept(headers, b))
-                             .build()
-                             .sizeof();
+        return pushPromiseRW.wrap(buffer, offset, limit)
+                            .streamId(streamId)
+                            .promisedStreamId(promisedStreamId)
+                            .endHeaders()
+                            .headers(mutator)
+                            .build()
+                            .sizeof();
     }
 
-    Flyweight.Builder.Visitor visitPushPromise(
+    int pushPromise(
+            MutableDirectBuffer buffer,
+            int offset,
+            int limit,
             int streamId,
             int promisedStreamId,
             DirectBuffer headersBuffer,
@@ -249,14 +292,13 @@ class Http2Writer
     {
         assert streamId != 0;
 
-        return (buffer, offset, limit) ->
-                pushPromiseRW.wrap(buffer, offset, limit)
-                             .streamId(streamId)
-                             .promisedStreamId(promisedStreamId)
-                             .endHeaders()
-                             .headers(headersBuffer, headersOffset, headersLength)
-                             .build()
-                             .sizeof();
+        return pushPromiseRW.wrap(buffer, offset, limit)
+                            .streamId(streamId)
+                            .promisedStreamId(promisedStreamId)
+                            .endHeaders()
+                            .headers(headersBuffer, headersOffset, headersLength)
+                            .build()
+                            .sizeof();
     }
 
 }
@@ -29,15 +29,18 @@ class HttpWriteScheduler
     private final HttpWriter target;
     private final long targetId;
     private final MessageConsumer applicationTarget;
+    private final Runnable onGroupBudget;
 
     private Http2Stream stream;
     private int slot = NO_SLOT;
     private CircularDirectBuffer targetBuffer;
     private boolean end;
     private boolean endSent;
+    private boolean reserved;
     private int applicationBudget;
     private int applicationPadding;
     private long applicationGroupId;
+    private boolean waiting;                    // for the group budget
 
     private int totalRead;
     private int totalWritten;
@@ -50,6 +53,20 @@ class HttpWriteScheduler
         this.target = target;
         this.targetId = targetId;
         this.stream = stream;
+        this.onGroupBudget = this::onGroupBudget;
+    }
+
+    /*
+     * Acquires the buffer up front, and keeps it until the end of request. So the
+     * request data that is sent before the application's window (i.e. with
+     * the initial window) can always be stored.
+     *
+     * @return true if the buffer is acquired
+     */
+    boolean reserve()
+    {
+        reserved = acquire() != null;
+        return reserved;
     }
 
     /*
@@ -61,7 +78,7 @@ class HttpWriteScheduler
         totalRead += http2DataRO.dataLength();
         end = http2DataRO.endStream();
 
-        if (targetBuffer == null)
+        if (targetBuffer == null || targetBuffer.size() == 0)
         {
             int toSlab = http2DataRO.dataLength();
             int toHttp = 0;
@@ -93,6 +110,7 @@ class HttpWriteScheduler
             {
                 endSent = true;
                 target.doHttpEnd(applicationTarget, targetId);
+                release();
             }
 
             return true;
@@ -116,6 +134,31 @@ class HttpWriteScheduler
         applicationPadding = padding;
         applicationGroupId = groupId;
 
+        flush();
+        sendHttp2Window();
+
+        if (groupId != 0)
+        {
+            stream.connection.factory.groupBudget.signal(groupId);
+        }
+    }
+
+    /*
+     * Another stream of the group has got a window
+     */
+    private void onGroupBudget()
+    {
+        if (waiting)
+        {
+            waiting = false;
+            flush();
+            sendHttp2Window();
+            stream.connection.flushWindowUpdates();
+        }
+    }
+
+    private void flush()
+    {
         if (targetBuffer != null)
         {
             int toHttp;
@@ -138,26 +181,37 @@ class HttpWriteScheduler
                     target.doHttpEnd(applicationTarget, targetId);
                 }
 
-                release();
+                if (!reserved || endSent)
+                {
+                    release();
+                }
             }
         }
-
-        sendHttp2Window();
     }
 
+    /*
+     * Streams in a group are limited by the group budget as well as their own
+     * credit, so the application is not over-committed when many streams arrive
+     * together. The frame's padding is claimed along with the data.
+     */
     private int getPart(int remaining)
     {
-        int toHttp = Math.min(remaining, applicationBudget - applicationPadding);
-        return Math.min(toHttp, 65535);
-//        int claimed = stream.connection.factory.groupBudgetClaimer.apply(applicationGroupId)
-//                                                                  .applyAsInt(toHttp + applicationWindowPadding);
-//        toHttp = claimed - applicationWindowPadding;
-//        if (toHttp <= 0)
-//        {
-//            stream.connection.factory.groupBudgetReleaser.apply(applicationGroupId)
-//                                                         .applyAsInt(toHttp);
-//        }
-//        return toHttp;
+        int toHttp = Math.min(Math.min(remaining, applicationBudget - applicationPadding), 65535);
+        if (toHttp > 0 && applicationGroupId != 0)
+        {
+            GroupBudget groupBudget = stream.connection.factory.groupBudget;
+            int claimed = groupBudget.claim(applicationGroupId, toHttp, applicationPadding);
+            if (claimed != GroupBudget.NO_BUDGET)
+            {
+                toHttp = claimed;
+                if (toHttp == 0 && !waiting)
+                {
+                    waiting = true;
+                    groupBudget.await(applicationGroupId, onGroupBudget);
+                }
+            }
+        }
+        return toHttp;
     }
 
     private void toHttp(DirectBuffer buffer, int offset, int length)
@@ -171,15 +225,27 @@ class HttpWriteScheduler
 
     void onReset()
     {
+        cancelWait();
         release();
     }
 
     void doAbort()
     {
         target.doHttpAbort(applicationTarget, targetId);
+        cancelWait();
         release();
     }
 
+    // closed stream must not be retried when the group gets more credit
+    private void cancelWait()
+    {
+        if (waiting)
+        {
+            waiting = false;
+            stream.connection.factory.groupBudget.cancel(applicationGroupId, onGroupBudget);
+        }
+    }
+
     /*
      * @return buffer if there is a slot, buffer is wrapped on that slot
      *         null if all slots are taken
@@ -220,11 +286,8 @@ class HttpWriteScheduler
             stream.http2InWindow += applicationCredit;
             stream.connection.http2InWindow += applicationCredit;
 
-            // HTTP2 connection-level flow-control
-            stream.connection.writeScheduler.windowUpdate(0, (int) applicationCredit);
-
-            // HTTP2 stream-level flow-control
-            stream.connection.writeScheduler.windowUpdate(stream.http2StreamId, (int) applicationCredit);
+            // HTTP2 connection-level and stream-level flow-control, sent at the end of the cycle
+            stream.connection.windowUpdate(stream, (int) applicationCredit);
         }
     }
 
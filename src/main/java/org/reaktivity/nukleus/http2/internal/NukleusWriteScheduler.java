@@ -15,20 +15,42 @@
  */
 package org.reaktivity.nukleus.http2.internal;
 
+import static org.reaktivity.nukleus.buffer.BufferPool.NO_SLOT;
+
 import org.agrona.MutableDirectBuffer;
+import org.reaktivity.nukleus.buffer.BufferPool;
 import org.reaktivity.nukleus.function.MessageConsumer;
 import org.reaktivity.nukleus.http2.internal.types.Flyweight;
 import org.reaktivity.nukleus.http2.internal.types.stream.DataFW;
 
+/*
+ * Writes HTTP2 frames to the network stream. The frames are accumulated in the
+ * write buffer, and written as network DATA frames on flush.
+ *
+ * In cork mode, flushed frames are copied to a pooled slot of the connection and
+ * are written only at the end of the duty cycle (see WriteFlusher), or when 65535
+ * bytes are accumulated. So the frames of all the streams of the connection share
+ * the network DATA frames, and their padding. The corked frames are written on an
+ * orderly end, but dropped when the network reply is aborted or reset.
+ */
 class NukleusWriteScheduler
 {
+    private static final int MAX_NUKLEUS_DATA_LENGTH = 65535;   // nukleus DATA frame length (2 bytes)
+
     private final Http2Connection connection;
     private final Http2Writer http2Writer;
     private final long targetId;
     private final MessageConsumer networkConsumer;
     private final MutableDirectBuffer writeBuffer;
+    private final BufferPool corkPool;                          // null if not corked
+    private final WriteFlusher writeFlusher;
+    private final Runnable flushCorked;
 
     private int accumulatedLength;
+    private int corkSlot = NO_SLOT;
+    private int corkedLength;
+    private boolean corkPending;
+    private boolean aborted;
 
     NukleusWriteScheduler(
             Http2Connection connection,
@@ -41,6 +63,9 @@ class NukleusWriteScheduler
         this.http2Writer = http2Writer;
         this.targetId = targetId;
         this.writeBuffer = http2Writer.writeBuffer;
+        this.corkPool = connection.factory.config.serverWriteCork() ? connection.factory.corkPool : null;
+        this.writeFlusher = connection.factory.writeFlusher;
+        this.flushCorked = this::flushCorked;
     }
 
     int http2Frame(
@@ -55,6 +80,7 @@ class NukleusWriteScheduler
 
     void doEnd()
     {
+        uncork();
         http2Writer.doEnd(networkConsumer, targetId);
     }
 
@@ -62,11 +88,18 @@ class NukleusWriteScheduler
     {
         if (accumulatedLength > 0)
         {
-            toNetwork(writeBuffer, DataFW.FIELD_OFFSET_PAYLOAD, accumulatedLength);
-            int adjustment = nukleusBudgetAdjustment(accumulatedLength);
-
-            connection.networkReplyBudget -= accumulatedLength + adjustment;
-            assert connection.networkReplyBudget >= 0;
+            if (aborted)
+            {
+                // network reply is gone, frames are dropped
+            }
+            else if (corkPool != null)
+            {
+                cork();
+            }
+            else
+            {
+                send(writeBuffer, accumulatedLength);
+            }
 
             accumulatedLength = 0;
         }
@@ -74,25 +107,99 @@ class NukleusWriteScheduler
         assert accumulatedLength == 0;
     }
 
+    // Writes the corked frames at the end of duty cycle
+    private void flushCorked()
+    {
+        corkPending = false;
+        uncork();
+    }
+
+    // Drops the corked frames, the network reply is aborted or reset
+    void abort()
+    {
+        aborted = true;
+        corkedLength = 0;
+        uncork();
+    }
+
+    private void uncork()
+    {
+        if (corkedLength > 0)
+        {
+            send(corkPool.buffer(corkSlot), corkedLength);
+            corkedLength = 0;
+        }
+
+        if (corkSlot != NO_SLOT)
+        {
+            corkPool.release(corkSlot);
+            corkSlot = NO_SLOT;
+        }
+    }
+
+    private void cork()
+    {
+        if (corkSlot == NO_SLOT)
+        {
+            corkSlot = corkPool.acquire(targetId);
+        }
+
+        int corkLimit = corkSlot == NO_SLOT ? 0 :
+                Math.min(MAX_NUKLEUS_DATA_LENGTH, corkPool.slotCapacity() - DataFW.FIELD_OFFSET_PAYLOAD);
+        if (corkSlot != NO_SLOT && corkedLength + accumulatedLength > corkLimit)
+        {
+            uncork();
+            corkSlot = corkPool.acquire(targetId);
+        }
+
+        if (corkSlot != NO_SLOT && accumulatedLength <= corkLimit)
+        {
+            MutableDirectBuffer corkBuffer = corkPool.buffer(corkSlot);
+            corkBuffer.putBytes(DataFW.FIELD_OFFSET_PAYLOAD + corkedLength, writeBuffer, DataFW.FIELD_OFFSET_PAYLOAD,
+                    accumulatedLength);
+            corkedLength += accumulatedLength;
+
+            if (!corkPending)
+            {
+                corkPending = true;
+                writeFlusher.register(flushCorked);
+            }
+        }
+        else
+        {
+            // no slot, or the frames don't fit in a slot
+            send(writeBuffer, accumulatedLength);
+        }
+    }
+
+    private void send(MutableDirectBuffer buffer, int length)
+    {
+        toNetwork(buffer, DataFW.FIELD_OFFSET_PAYLOAD, length);
+        int adjustment = nukleusBudgetAdjustment(length);
+
+        connection.networkReplyBudget -= length + adjustment;
+        assert connection.networkReplyBudget >= 0;
+    }
+
     boolean fits(int sizeof)
     {
         int candidateSizeof = accumulatedLength + sizeof;
-        int adjustment = nukleusBudgetAdjustment(candidateSizeof);
+        int adjustment = nukleusBudgetAdjustment(candidateSizeof) + nukleusBudgetAdjustment(corkedLength);
 
-        return candidateSizeof + adjustment <= connection.networkReplyBudget;
+        return corkedLength + candidateSizeof + adjustment <= connection.networkReplyBudget;
     }
 
     int remaining()
     {
-        int adjustment = nukleusBudgetAdjustment(accumulatedLength);
-        int sizeof = connection.networkReplyBudget - (accumulatedLength + adjustment);
+        int adjustment = nukleusBudgetAdjustment(accumulatedLength) + nukleusBudgetAdjustment(corkedLength);
+        int sizeof = connection.networkReplyBudget - (corkedLength + accumulatedLength + adjustment);
         int remaining = fits(sizeof) ? sizeof : sizeof - connection.networkReplyPadding;
         return Math.max(remaining, 0);
     }
 
     int nukleusBudgetAdjustment(int sizeof)
     {
-        int nukleusFrameCount = (int) Math.ceil((double)sizeof/65535);
+        int nukleusFrameCount = (int) Math.ceil((double)sizeof/MAX_NUKLEUS_DATA_LENGTH);
 
         // Every nukleus DATA frame incurs padding overhead
         return nukleusFrameCount * connection.networkReplyPadding;
@@ -102,7 +209,7 @@ class NukleusWriteScheduler
     {
         while (length > 0)
         {
-            int chunk = Math.min(length, 65535);     // limit by nukleus DATA frame length (2 bytes)
+            int chunk = Math.min(length, MAX_NUKLEUS_DATA_LENGTH);
             http2Writer.doData(networkConsumer, targetId, connection.networkReplyPadding, buffer, offset, chunk);
             offset += chunk;
             length -= chunk;
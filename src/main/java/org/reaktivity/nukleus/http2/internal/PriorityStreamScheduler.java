@@ -0,0 +1,343 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import org.agrona.collections.Int2ObjectHashMap;
+
+/*
+ * RFC 7540 5.3 stream priority. Keeps the dependency tree that is built from
+ * PRIORITY frames and the priority fields of HEADERS frames, and selects the
+ * next stream that can write.
+ *
+ * A stream is selected only if none of its ancestors can write. Among siblings,
+ * DATA bytes are shared in proportion to the weights. Every sibling carries a
+ * virtual "cycle" that advances by (length * 256 / weight) when a DATA frame is
+ * written by it (or by any of its descendants), and siblings are tried in
+ * increasing cycle order.
+ *
+ * Every node counts the ready streams in its subtree, so that the selection
+ * skips the subtrees without any ready stream.
+ */
+class PriorityStreamScheduler implements StreamScheduler
+{
+    static final int DEFAULT_WEIGHT = 16;
+    private static final int MAX_WEIGHT = 256;
+
+    private final int maxNodes;
+    private final Int2ObjectHashMap<Node> nodes;            // HTTP2 stream-id --> Node
+    private final Node root;
+
+    /*
+     * @param maxNodes upper bound on the tree size when adding streams via priority(),
+     *                 streams that are added via add() are not limited
+     */
+    PriorityStreamScheduler(int maxNodes)
+    {
+        this.maxNodes = maxNodes;
+        this.nodes = new Int2ObjectHashMap<>();
+        this.root = new Node(0);
+    }
+
+    int size()
+    {
+        return nodes.size();
+    }
+
+    @Override
+    public void add(int streamId)
+    {
+        if (!nodes.containsKey(streamId))
+        {
+            Node node = new Node(streamId);
+            nodes.put(streamId, node);
+            attach(root, node);
+        }
+    }
+
+    @Override
+    public void priority(int streamId, int parentStreamId, int weight, boolean exclusive)
+    {
+        assert streamId != 0;
+        assert streamId != parentStreamId;
+
+        Node node = nodes.get(streamId);
+        if (node == null)
+        {
+            if (nodes.size() >= maxNodes)
+            {
+                return;
+            }
+            node = new Node(streamId);
+            nodes.put(streamId, node);
+        }
+        Node formerParent = node.parent;
+
+        Node parent = parentStreamId == 0 ? root : nodes.get(parentStreamId);
+        if (parent == null)
+        {
+            // 5.3.1 A dependency on a stream that is not currently in the tree results
+            // in that stream being given a default priority
+            parent = root;
+            weight = DEFAULT_WEIGHT;
+            exclusive = false;
+        }
+
+        if (formerParent != null)
+        {
+            detach(node);
+
+            // 5.3.3 If a stream is made dependent on one of its own dependencies, the formerly
+            // dependent stream is first moved to be dependent on the reprioritized stream's
+            // previous parent. The moved dependency retains its weight.
+            if (descendant(parent, node))
+            {
+                detach(parent);
+                attach(formerParent, parent);
+            }
+        }
+
+        // 5.3.1 An exclusive flag causes the stream to become the sole dependency of
+        // its parent stream, causing other dependencies to become dependent on the
+        // exclusive stream
+        if (exclusive)
+        {
+            while (!parent.children.isEmpty())
+            {
+                Node child = parent.children.get(0);
+                detach(child);
+                attach(node, child);
+            }
+        }
+
+        node.weight = weight;
+        attach(parent, node);
+    }
+
+    @Override
+    public void ready(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && !node.ready)
+        {
+            node.ready = true;
+            for (Node current = node; current != null; current = current.parent)
+            {
+                current.active++;
+            }
+        }
+    }
+
+    @Override
+    public void blocked(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && node.ready)
+        {
+            node.ready = false;
+            for (Node current = node; current != null; current = current.parent)
+            {
+                current.active--;
+            }
+        }
+    }
+
+    /*
+     * 5.3.4 When a stream is removed from the dependency tree, its dependencies
+     * can be moved to become dependent on the parent of the closed stream. The
+     * weights of new dependencies are recalculated by distributing the weight of
+     * the dependency of the closed stream proportionally based on the weights of
+     * its dependencies.
+     */
+    @Override
+    public void remove(int streamId)
+    {
+        Node node = nodes.remove(streamId);
+        if (node != null)
+        {
+            Node parent = node.parent;
+            detach(node);
+
+            int total = 0;
+            for (int i = 0; i < node.children.size(); i++)
+            {
+                total += node.children.get(i).weight;
+            }
+
+            while (!node.children.isEmpty())
+            {
+                Node child = node.children.get(0);
+                detach(child);
+                child.weight = Math.max(1, node.weight * child.weight / total);
+                attach(parent, child);
+            }
+        }
+    }
+
+    @Override
+    public int select(IntPredicate writable)
+    {
+        return select(root, writable);
+    }
+
+    private int select(Node parent, IntPredicate writable)
+    {
+        List<Node> children = parent.children;
+        for (int i = 0; i < children.size(); i++)
+        {
+            Node child = children.get(i);
+            if (child.active == 0)
+            {
+                continue;
+            }
+            if (child.ready && writable.test(child.streamId))
+            {
+                return child.streamId;
+            }
+
+            // dependent streams get resources only if the parent cannot proceed
+            int streamId = select(child, writable);
+            if (streamId != 0)
+            {
+                return streamId;
+            }
+        }
+        return 0;
+    }
+
+    /*
+     * Accounts the DATA length written on a stream against the stream and all of
+     * its ancestors, so that their siblings get the next turns
+     */
+    @Override
+    public void charge(int streamId, int length)
+    {
+        Node node = nodes.get(streamId);
+        while (node != null && node != root)
+        {
+            Node parent = node.parent;
+
+            // a sibling that was idle doesn't get credit for the time it was idle
+            long cycle = Math.max(node.cycle, parent.lastCycle);
+            parent.lastCycle = cycle;
+            node.cycle = cycle + (long) length * MAX_WEIGHT / node.weight;
+            reorder(parent, node);
+
+            node = parent;
+        }
+    }
+
+    int active()
+    {
+        return root.active;
+    }
+
+    int parent(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null ? -1 : node.parent.streamId;
+    }
+
+    int weight(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null ? -1 : node.weight;
+    }
+
+    // @return true if the node is a descendant of ancestor
+    private static boolean descendant(Node node, Node ancestor)
+    {
+        for (Node current = node.parent; current != null; current = current.parent)
+        {
+            if (current == ancestor)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Adds the node as a child, keeping the children in the increasing cycle order
+    private static void attach(Node parent, Node node)
+    {
+        node.parent = parent;
+        node.cycle = Math.max(node.cycle, parent.lastCycle);
+        for (Node current = parent; current != null; current = current.parent)
+        {
+            current.active += node.active;
+        }
+
+        List<Node> children = parent.children;
+        int index = children.size();
+        while (index > 0 && children.get(index - 1).cycle > node.cycle)
+        {
+            index--;
+        }
+        children.add(index, node);
+    }
+
+    private static void detach(Node node)
+    {
+        node.parent.children.remove(node);
+        for (Node current = node.parent; current != null; current = current.parent)
+        {
+            current.active -= node.active;
+        }
+        node.parent = null;
+    }
+
+    // Node's cycle only increases, so moves it towards the end of children
+    private static void reorder(Node parent, Node node)
+    {
+        List<Node> children = parent.children;
+        int index = children.indexOf(node);
+        while (index + 1 < children.size() && children.get(index + 1).cycle <= node.cycle)
+        {
+            children.set(index, children.get(index + 1));
+            index++;
+        }
+        children.set(index, node);
+    }
+
+    private static final class Node
+    {
+        final int streamId;
+        final List<Node> children;
+        Node parent;
+        int weight;
+        long cycle;
+        long lastCycle;
+        boolean ready;
+        int active;                 // number of ready streams in the subtree
+
+        Node(int streamId)
+        {
+            this.streamId = streamId;
+            this.children = new ArrayList<>(2);
+            this.weight = DEFAULT_WEIGHT;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[streamId=%d weight=%d cycle=%d]", streamId, weight, cycle);
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+/*
+ * Connection receive window auto-tuning from PING round trips. A PING is sent
+ * while request data is flowing, and the bytes received until its ACK give an
+ * estimate of the bandwidth-delay product (BDP) of the connection.
+ *
+ * The window grows to twice the estimate when the peer uses most of the window
+ * in a round trip (i.e. the window limits the throughput), and gives back the
+ * growth when the peer uses only a small part of it. The window stays between
+ * the initial window and the max window. A new PING is not sent sooner than a
+ * smoothed round trip after the last ACK, so the measurements don't flood the peer.
+ *
+ * Only the connection window is tuned. A stream's request data is buffered in
+ * one slot, so its window is already the largest the slot can take (the initial
+ * window is capped to the slot capacity) and cannot grow any further.
+ */
+final class ReceiveWindowTuner
+{
+    private final int minWindow;
+    private final int maxWindow;
+
+    private int window;
+    private long rtt;                   // smoothed round-trip time in nanos
+    private long received;              // DATA payload bytes on the connection
+    private long receivedAtPing;
+    private boolean pinging;            // PING is sent, but its ACK is not received yet
+    private long pingSentAt;
+    private long pingAckedAt;
+
+    ReceiveWindowTuner(int initialWindow, int maxWindow)
+    {
+        this.minWindow = initialWindow;
+        this.maxWindow = Math.max(maxWindow, initialWindow);
+        this.window = initialWindow;
+    }
+
+    int window()
+    {
+        return window;
+    }
+
+    long rtt()
+    {
+        return rtt;
+    }
+
+    void onData(int length)
+    {
+        received += length;
+    }
+
+    /*
+     * @return true if a PING needs to be sent with the pingPayload() for the next measurement
+     */
+    boolean ping(long now)
+    {
+        if (!pinging && received > receivedAtPing && (rtt == 0 || now - pingAckedAt >= rtt))
+        {
+            pinging = true;
+            pingSentAt = now;
+            receivedAtPing = received;
+            return true;
+        }
+        return false;
+    }
+
+    long pingPayload()
+    {
+        return pingSentAt;
+    }
+
+    /*
+     * @return change in the window, can be negative
+     */
+    int onPingAck(long payload, long now)
+    {
+        if (!pinging || payload != pingSentAt)
+        {
+            return 0;           // not our PING
+        }
+        pinging = false;
+        pingAckedAt = now;
+
+        long sample = Math.max(now - pingSentAt, 1);
+        rtt = rtt == 0 ? sample : (7 * rtt + sample) / 8;
+
+        long bdp = received - receivedAtPing;
+        receivedAtPing = received;
+
+        int newWindow = window;
+        if (bdp > window * 2L / 3)
+        {
+            newWindow = clamp(2 * bdp);
+        }
+        else if (bdp < window / 4L)
+        {
+            newWindow = clamp(Math.max(2 * bdp, window / 2L));
+        }
+
+        int change = newWindow - window;
+        window = newWindow;
+        return change;
+    }
+
+    private int clamp(long value)
+    {
+        return (int) Math.max(minWindow, Math.min(value, maxWindow));
+    }
+
+}
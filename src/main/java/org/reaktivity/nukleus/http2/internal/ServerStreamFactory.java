@@ -22,6 +22,7 @@ import java.util.function.LongFunction;
 import java.util.function.LongSupplier;
 
 import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.collections.Long2ObjectHashMap;
 import org.agrona.concurrent.UnsafeBuffer;
@@ -46,6 +47,7 @@ import org.reaktivity.nukleus.http2.internal.types.stream.Http2HeadersFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2PingFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2PrefaceFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2PriorityFW;
+import org.reaktivity.nukleus.http2.internal.types.stream.Http2PriorityUpdateFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2SettingsFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.Http2WindowUpdateFW;
 import org.reaktivity.nukleus.http2.internal.types.stream.HttpBeginExFW;
@@ -57,7 +59,6 @@ import org.reaktivity.nukleus.stream.StreamFactory;
 public final class ServerStreamFactory implements StreamFactory
 {
 
-    private static final double OUTWINDOW_LOW_THRESHOLD = 0.5;      // TODO configuration
     private static final double INWINDOW_THRESHOLD = 0.5;
 
     final RouteFW routeRO = new RouteFW();
@@ -83,6 +84,7 @@ public final class ServerStreamFactory implements StreamFactory
     final HpackHeaderBlockFW blockRO = new HpackHeaderBlockFW();
     final Http2WindowUpdateFW http2WindowRO = new Http2WindowUpdateFW();
     final Http2PriorityFW priorityRO = new Http2PriorityFW();
+    final Http2PriorityUpdateFW priorityUpdateRO = new Http2PriorityUpdateFW();
     final UnsafeBuffer scratch = new UnsafeBuffer(new byte[8192]);  // TODO
     final HttpBeginExFW.Builder httpBeginExRW = new HttpBeginExFW.Builder();
     final ListFW.Builder<HttpHeaderFW.Builder, HttpHeaderFW> headersRW =
@@ -92,6 +94,7 @@ public final class ServerStreamFactory implements StreamFactory
     final HttpBeginExFW beginExRO = new HttpBeginExFW();
     final Http2DataExFW dataExRO = new Http2DataExFW();
     final HpackHeaderBlockFW.Builder blockRW = new HpackHeaderBlockFW.Builder();
+    final MutableDirectBuffer blockBuffer = new UnsafeBuffer(new byte[8192]);
 
     final Http2PingFW pingRO = new Http2PingFW();
 
@@ -99,6 +102,10 @@ public final class ServerStreamFactory implements StreamFactory
     private final ResetFW.Builder resetRW = new ResetFW.Builder();
 
     final Http2Configuration config;
+    final StreamSchedulerFactory streamSchedulers;
+    final HeaderIndexingPolicy headerIndexing;
+    final boolean hpackHuffman;
+    private final int flushThreshold;                       // percentage of initial network window
     private final RouteManager router;
     private final MutableDirectBuffer writeBuffer;
     final BufferPool bufferPool;
@@ -106,11 +113,19 @@ public final class ServerStreamFactory implements StreamFactory
     final BufferPool headersPool;
     final BufferPool httpWriterPool;
     final BufferPool http2ReplyPool;
+    final BufferPool corkPool;
+    final WriteFlusher writeFlusher;
     final LongSupplier supplyStreamId;
     final LongSupplier supplyCorrelationId;
     final HttpWriter httpWriter;
     final Http2Writer http2Writer;
 
+    // Huffman decoded name and value of the request header field that is being decoded
+    final MutableDirectBuffer huffmanNameBuffer = new ExpandableArrayBuffer(256);
+    final MutableDirectBuffer huffmanValueBuffer = new ExpandableArrayBuffer(4096);
+    final UnsafeBuffer huffmanNameRO = new UnsafeBuffer(new byte[0]);
+    final UnsafeBuffer huffmanValueRO = new UnsafeBuffer(new byte[0]);
+
     // Buf to build HTTP error status code header
     final MutableDirectBuffer errorBuf = new UnsafeBuffer(new byte[64]);
 
@@ -118,8 +133,7 @@ public final class ServerStreamFactory implements StreamFactory
     final Long2ObjectHashMap<Correlation> correlations;
     private final MessageFunction<RouteFW> wrapRoute;
     final LongSupplier supplyGroupId;
-    final LongFunction<IntUnaryOperator> groupBudgetClaimer;
-    final LongFunction<IntUnaryOperator> groupBudgetReleaser;
+    final GroupBudget groupBudget;
 
     ServerStreamFactory(
             Http2Configuration config,
@@ -131,9 +145,15 @@ public final class ServerStreamFactory implements StreamFactory
             Long2ObjectHashMap<Correlation> correlations,
             LongSupplier supplyGroupId,
             LongFunction<IntUnaryOperator> groupBudgetClaimer,
-            LongFunction<IntUnaryOperator> groupBudgetReleaser)
+            LongFunction<IntUnaryOperator> groupBudgetReleaser,
+            WriteFlusher writeFlusher)
     {
         this.config = config;
+        this.streamSchedulers = new StreamSchedulerFactory(config);
+        this.headerIndexing = new HeaderIndexingPolicy(config.serverHpackIndexing(), config.serverHpackIndexingValueMax(),
+                config.serverHpackNeverIndexed(), config.serverHpackIndexingUnique());
+        this.hpackHuffman = config.serverHpackHuffman();
+        this.flushThreshold = config.serverFlushThreshold();
         this.router = requireNonNull(router);
         this.writeBuffer = requireNonNull(writeBuffer);
         this.bufferPool = requireNonNull(bufferPool);
@@ -141,12 +161,13 @@ public final class ServerStreamFactory implements StreamFactory
         this.headersPool = bufferPool.duplicate();
         this.httpWriterPool = bufferPool.duplicate();
         this.http2ReplyPool = bufferPool.duplicate();
+        this.corkPool = bufferPool.duplicate();
+        this.writeFlusher = requireNonNull(writeFlusher);
         this.supplyStreamId = requireNonNull(supplyStreamId);
         this.supplyCorrelationId = requireNonNull(supplyCorrelationId);
         this.correlations = requireNonNull(correlations);
         this.supplyGroupId = requireNonNull(supplyGroupId);
-        this.groupBudgetClaimer = requireNonNull(groupBudgetClaimer);
-        this.groupBudgetReleaser = requireNonNull(groupBudgetReleaser);
+        this.groupBudget = new GroupBudget(requireNonNull(groupBudgetClaimer), requireNonNull(groupBudgetReleaser));
 
         this.httpWriter = new HttpWriter(writeBuffer);
         this.http2Writer = new Http2Writer(writeBuffer);
@@ -317,7 +338,7 @@ public final class ServerStreamFactory implements StreamFactory
             router.setThrottle(networkReplyName, networkReplyId, this::handleThrottle);
 
             this.streamState = this::afterBegin;
-            http2Connection = new Http2Connection(ServerStreamFactory.this, router, networkReplyId,
+            http2Connection = new Http2Connection(ServerStreamFactory.this, router, networkReplyName, networkReplyId,
                     networkReply, wrapRoute);
             http2Connection.handleBegin(begin);
         }
@@ -391,7 +412,7 @@ public final class ServerStreamFactory implements StreamFactory
             int padding = windowRO.padding();
             if (http2Connection.outWindowThreshold == -1)
             {
-                http2Connection.outWindowThreshold = (int) (OUTWINDOW_LOW_THRESHOLD * credit);
+                http2Connection.outWindowThreshold = (int) ((long) flushThreshold * credit / 100);
             }
             http2Connection.networkReplyBudget += credit;
             http2Connection.networkReplyPadding = padding;
@@ -31,6 +31,7 @@ public final class ServerStreamFactoryBuilder implements StreamFactoryBuilder
 {
     private final Http2Configuration config;
     private final Long2ObjectHashMap<Correlation> correlations;
+    private final WriteFlusher writeFlusher;
 
     private RouteManager router;
     private MutableDirectBuffer writeBuffer;
@@ -42,9 +43,11 @@ public final class ServerStreamFactoryBuilder implements StreamFactoryBuilder
     private LongFunction<IntUnaryOperator> groupBudgetReleaser;
 
     ServerStreamFactoryBuilder(
-        Http2Configuration config)
+        Http2Configuration config,
+        WriteFlusher writeFlusher)
     {
         this.config = config;
+        this.writeFlusher = writeFlusher;
         this.correlations = new Long2ObjectHashMap<>();
     }
 
@@ -116,6 +119,6 @@ public final class ServerStreamFactoryBuilder implements StreamFactoryBuilder
         final BufferPool bufferPool = supplyBufferPool.get();
 
         return new ServerStreamFactory(config, router, writeBuffer, bufferPool, supplyStreamId, supplyCorrelationId,
-                correlations, supplyGroupId, groupBudgetClaimer, groupBudgetReleaser);
+                correlations, supplyGroupId, groupBudgetClaimer, groupBudgetReleaser, writeFlusher);
     }
 }
@@ -28,7 +28,7 @@ class Settings
     int maxConcurrentStreams = DEFAULT_MAX_CONCURRENT_STREAMS;
     int initialWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
     int maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
-    long maxHeaderListSize;
+    long maxHeaderListSize;                     // 0 for unlimited
 
     Settings(int maxConcurrentStreams, int initialWindowSize)
     {
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.function.IntPredicate;
+
+/*
+ * Selects the HTTP2 stream whose buffered DATA is written next on a connection.
+ * Streams are identified by HTTP2 stream-id, and the priority signals that are
+ * not relevant to an implementation are ignored.
+ *
+ * Only the ready streams (that have buffered frames and stream window) are
+ * considered for selection, so the cost depends on the number of streams that
+ * can make progress rather than all the streams on the connection.
+ */
+interface StreamScheduler
+{
+
+    /*
+     * Adds the stream with default priority, if it is not already known
+     */
+    void add(int streamId);
+
+    void remove(int streamId);
+
+    /*
+     * Stream has buffered frames that can be written when the connection has window
+     */
+    void ready(int streamId);
+
+    /*
+     * Stream has no buffered frames, or no stream window
+     */
+    void blocked(int streamId);
+
+    /*
+     * @return stream-id of the ready stream that is written next
+     *         0 if none of the ready streams can write
+     */
+    int select(IntPredicate writable);
+
+    /*
+     * Accounts the DATA length written on a stream
+     */
+    void charge(int streamId, int length);
+
+    // RFC 7540 5.3 PRIORITY frame, or priority fields of HEADERS frame
+    default void priority(int streamId, int parentStreamId, int weight, boolean exclusive)
+    {
+    }
+
+    // RFC 9218 priority header field, or PRIORITY_UPDATE frame
+    default void urgency(int streamId, int urgency, boolean incremental)
+    {
+    }
+
+}
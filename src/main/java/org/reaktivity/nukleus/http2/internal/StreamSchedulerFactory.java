@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Creates the stream scheduler of a connection from the configuration. The
+ * scheduler is configured for all connections, and may be overridden for the
+ * connections that are accepted from a source.
+ *
+ * All the schedulers and the quantum are validated when the factory is created,
+ * so that a misconfiguration fails at startup.
+ */
+final class StreamSchedulerFactory
+{
+    static final String FIFO = "fifo";
+    static final String ROUND_ROBIN = "round-robin";
+    static final String PRIORITY = "priority";              // RFC 7540 dependency tree
+    static final String URGENCY = "urgency";                // RFC 9218 extensible priorities
+    static final String DRR = "drr";                        // deficit round-robin
+
+    private final Http2Configuration config;
+    private final String defaultName;
+    private final Map<String, String> sourceNames;
+    private final int quantum;
+
+    StreamSchedulerFactory(Http2Configuration config)
+    {
+        this.config = config;
+        this.defaultName = config.serverStreamScheduler();
+        if (!known(defaultName))
+        {
+            throw new IllegalArgumentException(String.format("Unknown stream scheduler \"%s\"", defaultName));
+        }
+        this.sourceNames = sourceNames(config.serverStreamSchedulerSources());
+        this.quantum = config.serverStreamQuantum();
+        if (quantum <= 0)
+        {
+            throw new IllegalArgumentException(String.format("Stream quantum %d is not positive", quantum));
+        }
+    }
+
+    StreamScheduler newStreamScheduler(String sourceName)
+    {
+        // bounds the state kept for idle streams that are only referenced by priority signals
+        int maxStreams = 2 * config.serverConcurrentStreams();
+
+        switch (sourceNames.getOrDefault(sourceName, defaultName))
+        {
+            case FIFO:
+                return new FifoStreamScheduler();
+            case ROUND_ROBIN:
+                return new RoundRobinStreamScheduler();
+            case URGENCY:
+                return new UrgencyStreamScheduler(maxStreams);
+            case DRR:
+                return new DeficitRoundRobinStreamScheduler(quantum);
+            default:
+                return new PriorityStreamScheduler(maxStreams);
+        }
+    }
+
+    // source:scheduler entries separated by commas
+    private static Map<String, String> sourceNames(String sources)
+    {
+        Map<String, String> sourceNames = new HashMap<>();
+        for (String source : sources.split(","))
+        {
+            String trimmed = source.trim();
+            if (!trimmed.isEmpty())
+            {
+                int colon = trimmed.indexOf(':');
+                String name = colon == -1 ? "" : trimmed.substring(colon + 1).trim();
+                if (!known(name))
+                {
+                    throw new IllegalArgumentException(String.format("Unknown stream scheduler \"%s\"", trimmed));
+                }
+                sourceNames.put(trimmed.substring(0, colon).trim(), name);
+            }
+        }
+        return sourceNames;
+    }
+
+    private static boolean known(String name)
+    {
+        switch (name)
+        {
+            case FIFO:
+            case ROUND_ROBIN:
+            case PRIORITY:
+            case URGENCY:
+            case DRR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.function.IntPredicate;
+
+import org.agrona.DirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+
+/*
+ * RFC 9218 extensible priorities. Streams are kept in one bucket per urgency
+ * level, and the buckets are served strictly (urgency 0 first). Within a bucket,
+ * non-incremental streams are served one at a time in the stream-id order, and
+ * then the incremental streams are served round-robin one DATA frame at a time.
+ *
+ * Each bucket is a circular list of the ready streams:
+ * [non-incremental by stream-id][incremental]
+ */
+class UrgencyStreamScheduler implements StreamScheduler
+{
+    static final int DEFAULT_URGENCY = 3;
+    private static final int URGENCY_LEVELS = 8;
+    private static final int INCREMENTAL = 0x08;
+
+    private final int maxNodes;
+    private final Int2ObjectHashMap<Node> nodes;            // HTTP2 stream-id --> Node
+    private final Node[] buckets;                           // urgency --> list head
+
+    /*
+     * @param maxNodes upper bound on the number of streams when adding streams via urgency(),
+     *                 streams that are added via add() are not limited
+     */
+    UrgencyStreamScheduler(int maxNodes)
+    {
+        this.maxNodes = maxNodes;
+        this.nodes = new Int2ObjectHashMap<>();
+        this.buckets = new Node[URGENCY_LEVELS];
+        for (int i = 0; i < URGENCY_LEVELS; i++)
+        {
+            buckets[i] = new Node(0);
+        }
+    }
+
+    int size()
+    {
+        return nodes.size();
+    }
+
+    @Override
+    public void add(int streamId)
+    {
+        if (!nodes.containsKey(streamId))
+        {
+            Node node = new Node(streamId);
+            nodes.put(streamId, node);
+        }
+    }
+
+    @Override
+    public void urgency(int streamId, int urgency, boolean incremental)
+    {
+        assert streamId != 0;
+        assert urgency >= 0 && urgency < URGENCY_LEVELS;
+
+        Node node = nodes.get(streamId);
+        if (node == null)
+        {
+            if (nodes.size() >= maxNodes)
+            {
+                return;
+            }
+            node = new Node(streamId);
+            nodes.put(streamId, node);
+        }
+
+        if (node.ready)
+        {
+            unlink(node);
+        }
+        node.urgency = urgency;
+        node.incremental = incremental;
+        if (node.ready)
+        {
+            link(node);
+        }
+    }
+
+    @Override
+    public void remove(int streamId)
+    {
+        Node node = nodes.remove(streamId);
+        if (node != null && node.ready)
+        {
+            unlink(node);
+        }
+    }
+
+    @Override
+    public void ready(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && !node.ready)
+        {
+            node.ready = true;
+            link(node);
+        }
+    }
+
+    @Override
+    public void blocked(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && node.ready)
+        {
+            node.ready = false;
+            unlink(node);
+        }
+    }
+
+    @Override
+    public int select(IntPredicate writable)
+    {
+        for (int i = 0; i < URGENCY_LEVELS; i++)
+        {
+            Node head = buckets[i];
+            for (Node node = head.next; node != head; node = node.next)
+            {
+                if (writable.test(node.streamId))
+                {
+                    return node.streamId;
+                }
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void charge(int streamId, int length)
+    {
+        Node node = nodes.get(streamId);
+        if (node != null && node.ready && node.incremental)
+        {
+            // round-robin, next turn goes to the other incremental streams
+            unlink(node);
+            link(node);
+        }
+    }
+
+    int streamUrgency(int streamId)
+    {
+        Node node = nodes.get(streamId);
+        return node == null ? -1 : node.urgency;
+    }
+
+    private void link(Node node)
+    {
+        Node head = buckets[node.urgency];
+        Node next = head;
+        if (!node.incremental)
+        {
+            next = head.next;
+            while (next != head && !next.incremental && next.streamId < node.streamId)
+            {
+                next = next.next;
+            }
+        }
+
+        // insert before next
+        node.next = next;
+        node.prev = next.prev;
+        next.prev.next = node;
+        next.prev = node;
+    }
+
+    private static void unlink(Node node)
+    {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    /*
+     * Parses RFC 9218 priority field value, a structured field dictionary
+     * for e.g "u=5, i". Unknown or invalid members are ignored.
+     *
+     * @return urgency in the lower 3 bits, and incremental flag in bit 3
+     */
+    static int parsePriority(DirectBuffer buffer, int offset, int length)
+    {
+        int urgency = DEFAULT_URGENCY;
+        boolean incremental = false;
+
+        int limit = offset + length;
+        int index = offset;
+        while (index < limit)
+        {
+            byte b = buffer.getByte(index);
+            if (b == ' ' || b == '\t' || b == ',')
+            {
+                index++;
+                continue;
+            }
+
+            int keyOffset = index;
+            while (index < limit && !delimiter(buffer.getByte(index)))
+            {
+                index++;
+            }
+            int keyLength = index - keyOffset;
+
+            int valueOffset = -1;
+            int valueLimit = -1;
+            if (index < limit && buffer.getByte(index) == '=')
+            {
+                valueOffset = ++index;
+                while (index < limit && !delimiter(buffer.getByte(index)))
+                {
+                    index++;
+                }
+                valueLimit = index;
+            }
+
+            // skip any parameters
+            while (index < limit && buffer.getByte(index) != ',')
+            {
+                index++;
+            }
+
+            if (keyLength == 1)
+            {
+                byte key = buffer.getByte(keyOffset);
+                if (key == 'u' && valueOffset != -1 && valueLimit - valueOffset == 1)
+                {
+                    int value = buffer.getByte(valueOffset) - '0';
+                    if (value >= 0 && value < URGENCY_LEVELS)
+                    {
+                        urgency = value;
+                    }
+                }
+                else if (key == 'i')
+                {
+                    if (valueOffset == -1)
+                    {
+                        incremental = true;
+                    }
+                    else if (valueLimit - valueOffset == 2 && buffer.getByte(valueOffset) == '?')
+                    {
+                        byte value = buffer.getByte(valueOffset + 1);
+                        if (value == '0' || value == '1')
+                        {
+                            incremental = value == '1';
+                        }
+                    }
+                }
+            }
+        }
+
+        return urgency | (incremental ? INCREMENTAL : 0);
+    }
+
+    static int urgency(int priority)
+    {
+        return priority & 0x07;
+    }
+
+    static boolean incremental(int priority)
+    {
+        return (priority & INCREMENTAL) != 0;
+    }
+
+    private static boolean delimiter(byte b)
+    {
+        return b == '=' || b == ',' || b == ';' || b == ' ' || b == '\t';
+    }
+
+    private static final class Node
+    {
+        final int streamId;
+        int urgency;
+        boolean incremental;
+        boolean ready;
+        Node prev;
+        Node next;
+
+        Node(int streamId)
+        {
+            this.streamId = streamId;
+            this.urgency = DEFAULT_URGENCY;
+            this.prev = this;
+            this.next = this;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("[streamId=%d urgency=%d incremental=%b]", streamId, urgency, incremental);
+        }
+    }
+
+}
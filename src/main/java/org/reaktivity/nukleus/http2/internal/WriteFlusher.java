@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.reaktivity.nukleus.Nukleus;
+
+/*
+ * Runs the registered flush tasks at the end of duty cycle. Connections register
+ * a task when they hold back network writes, i.e. the frames of corked connections,
+ * and the frames that are held back until more network budget arrives (to check
+ * their max hold deadline). A task is run once per registration.
+ */
+final class WriteFlusher implements Nukleus
+{
+    private List<Runnable> tasks;
+    private List<Runnable> running;
+
+    WriteFlusher()
+    {
+        this.tasks = new ArrayList<>();
+        this.running = new ArrayList<>();
+    }
+
+    void register(Runnable task)
+    {
+        tasks.add(task);
+    }
+
+    @Override
+    public int process()
+    {
+        // tasks may register again while running
+        List<Runnable> current = tasks;
+        tasks = running;
+        running = current;
+
+        int workCount = current.size();
+        for (int i = 0; i < workCount; i++)
+        {
+            current.get(i).run();
+        }
+        current.clear();
+
+        return workCount;
+    }
+
+    @Override
+    public String name()
+    {
+        return "http2.flusher";
+    }
+
+}
@@ -36,13 +36,15 @@ public interface WriteScheduler
 
     boolean windowUpdate(int streamId, int update);
 
+    boolean ping(long payload);
+
     boolean pingAck(DirectBuffer buffer, int offset, int length);
 
     boolean goaway(int lastStreamId, Http2ErrorCode errorCode);
 
     boolean rst(int streamId, Http2ErrorCode errorCode);
 
-    boolean settings(int maxConcurrentStreams, int initialWindowSize);
+    boolean settings(int maxConcurrentStreams, int initialWindowSize, long maxHeaderListSize);
 
     boolean settingsAck();
 
@@ -56,12 +58,27 @@ public interface WriteScheduler
 
     void doEnd();
 
+    // releases the buffered frames when the connection is cleaned up
+    void close();
+
+    // drops the corked frames without writing them, the network reply is aborted or reset
+    void abort();
+
     void onWindow();
 
     void onHttp2Window();
 
     void onHttp2Window(int streamId);
 
+    // stream window is adjusted by SETTINGS_INITIAL_WINDOW_SIZE
+    void onHttp2InitialWindow(int streamId);
+
+    void onHttp2Priority(int streamId, int parentStreamId, int weight, boolean exclusive);
+
+    void onHttp2Urgency(int streamId, int urgency, boolean incremental);
+
+    void onHttp2StreamClosed(int streamId);
+
     interface Entry
     {
     }
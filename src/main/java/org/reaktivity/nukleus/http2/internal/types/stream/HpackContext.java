@@ -15,17 +15,20 @@
  */
 package org.reaktivity.nukleus.http2.internal.types.stream;
 
+import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
+import static org.reaktivity.nukleus.http2.internal.util.Fnv1a.OFFSET_64;
+import static org.reaktivity.nukleus.http2.internal.util.Fnv1a.PRIME_64;
+import static org.reaktivity.nukleus.http2.internal.util.Fnv1a.hash32;
+import static org.reaktivity.nukleus.http2.internal.util.Fnv1a.hash64;
 
 public class HpackContext
 {
@@ -99,32 +102,61 @@ public class HpackContext
 
     private static final int STATIC_TABLE_LENGTH = STATIC_TABLE.length;
 
+    // slot --> static index tables of the perfect hashes for static lookups, 0 for an empty slot
+    private static final byte[] STATIC_NAME_INDEX = new byte[256];
+    private static final int STATIC_NAME_MASK = STATIC_NAME_INDEX.length - 1;
+    private static final int STATIC_NAME_SEED = perfectHash(STATIC_NAME_INDEX, false);
+    private static final byte[] STATIC_NAME_VALUE_INDEX = new byte[64];
+    private static final int STATIC_NAME_VALUE_MASK = STATIC_NAME_VALUE_INDEX.length - 1;
+    private static final int STATIC_NAME_VALUE_SEED = perfectHash(STATIC_NAME_VALUE_INDEX, true);
+
+    private static final long NO_ID = -1L;
+
     public static final DirectBuffer CONNECTION = new UnsafeBuffer("connection".getBytes(UTF_8));
     public static final DirectBuffer TE = new UnsafeBuffer("te".getBytes(UTF_8));
     public static final DirectBuffer TRAILERS = new UnsafeBuffer("trailers".getBytes(UTF_8));
     public static final DirectBuffer KEEP_ALIVE = new UnsafeBuffer("keep-alive".getBytes(UTF_8));
     public static final DirectBuffer PROXY_CONNECTION = new UnsafeBuffer("proxy-connection".getBytes(UTF_8));
     public static final DirectBuffer UPGRADE = new UnsafeBuffer("upgrade".getBytes(UTF_8));
+    public static final DirectBuffer PRIORITY = new UnsafeBuffer("priority".getBytes(UTF_8));
     public static final DirectBuffer DEFAULT_ACCESS_CONTROL_ALLOW_ORIGIN = new UnsafeBuffer("*".getBytes(UTF_8));
 
-    // Dynamic table. Entries are added at the end (since it is in reverse order,
-    // need to calculate the index accordingly)
-    /* private */ final List<HeaderField> table = new ArrayList<>();
+    // Dynamic table. Entries are stored in a ring buffer, from the oldest to the newest.
+    // Name and value of an entry are contiguous, and an entry that doesn't fit at the end
+    // of the ring starts at the beginning, so the ring has twice the max table size.
+    private MutableDirectBuffer ring;
+    private int writeOffset;
+
+    // Ring offset, name length and value length of entries, in a circular array
+    private int[] entries;
+    private int maxEntries;
+    private int head;                       // oldest entry
+    private int count;
     /* private */ int tableSize;
 
+    // Views of a dynamic entry's name and value, valid until the next lookup
+    private final UnsafeBuffer nameRO = new UnsafeBuffer(new byte[0]);
+    private final UnsafeBuffer valueRO = new UnsafeBuffer(new byte[0]);
+
+    // Copy of the name when it refers to an entry that may be evicted
+    private MutableDirectBuffer nameCopy;
+
     // No need to update the following index maps for decoding context
     private final boolean encoding;
 
     // name --> uniquie id (stable across evictions) for dynamic entries.
     // Used during encoding
-    private final Map<DirectBuffer, Long> name2Index = new HashMap<>();
+    private final IndexTable name2Index = new IndexTable(false);
 
     // (name, value) --> uniquie id (stable across evictions) for dynamic entries.
     // Used during encoding
-    private final Map<NameValue, Long> namevalue2Index = new HashMap<>();
+    private final IndexTable namevalue2Index = new IndexTable(true);
 
     private int maxTableSize;
 
+    // Changes whenever the dynamic table changes
+    private long version;
+
     // Keeps track of number of evictions and used in calculation of unique id
     // (No need to worry about overflow as it takes many years to overflow in practice)
     private long noEvictions;
@@ -162,6 +194,31 @@ public class HpackContext
     {
         this.maxTableSize = maxTableSize;
         this.encoding = encoding;
+        allocate(maxTableSize);
+    }
+
+    public int maxTableSize()
+    {
+        return maxTableSize;
+    }
+
+    // number of entries in the dynamic table
+    int size()
+    {
+        return count;
+    }
+
+    // bytes reserved for the entries of the dynamic table
+    int capacity()
+    {
+        return ring.capacity();
+    }
+
+    // @return version of the dynamic table, a header block encoded against one version
+    //         is valid for the same version only
+    public long version()
+    {
+        return version;
     }
 
     void add(String name, String value)
@@ -172,17 +229,30 @@ public class HpackContext
         add(nameBuffer, valueBuffer);
     }
 
+    /*
+     * Copies the name and value into the dynamic table, so they need not outlive this call
+     */
     public void add(DirectBuffer nameBuffer, DirectBuffer valueBuffer)
     {
-        HeaderField header = new HeaderField(nameBuffer, valueBuffer);
+        int nameLength = nameBuffer.capacity();
+        int valueLength = valueBuffer.capacity();
+        int size = nameLength + valueLength + 32;
+        version++;
+
+        // RFC 7541 4.4 name may refer to an entry that is evicted to make space for this one
+        if (nameBuffer == nameRO && size <= maxTableSize)
+        {
+            nameCopy.putBytes(0, nameBuffer, 0, nameLength);
+            nameBuffer = nameCopy;
+        }
 
         // See if the header can be added to dynamic table. Calculate the
         // number of entries to be evicted to make space in the table.
         int noEntries = 0;
-        int wouldbeSize = tableSize + header.size;
-        while (noEntries < table.size() && wouldbeSize > maxTableSize)
+        int wouldbeSize = tableSize + size;
+        while (noEntries < count && wouldbeSize > maxTableSize)
         {
-            wouldbeSize -= table.get(noEntries).size;
+            wouldbeSize -= entrySize(noEntries);
             noEntries++;
         }
         if (noEntries > 0)
@@ -194,39 +264,54 @@ public class HpackContext
         boolean spaceAvailable = wouldbeSize <= maxTableSize;
         if (spaceAvailable)
         {
-            if (encoding)
+            if (count == 0 || writeOffset + nameLength + valueLength > ring.capacity())
             {
-                long id = noEvictions + table.size();
+                writeOffset = 0;
+            }
+            ring.putBytes(writeOffset, nameBuffer, 0, nameLength);
+            ring.putBytes(writeOffset + nameLength, valueBuffer, 0, valueLength);
 
-                name2Index.putIfAbsent(header.name, id);
+            int entry = 3 * ((head + count) % maxEntries);
+            entries[entry] = writeOffset;
+            entries[entry + 1] = nameLength;
+            entries[entry + 2] = valueLength;
+            writeOffset += nameLength + valueLength;
 
-                NameValue nameValue = new NameValue(header.name, header.value);
-                namevalue2Index.putIfAbsent(nameValue, id);
+            if (encoding)
+            {
+                long id = noEvictions + count;
+                index(count, id);
             }
-            table.add(header);
-            tableSize += header.size;
+            count++;
+            tableSize += size;
         }
     }
 
     public void updateSize(int newMaxTableSize)
     {
+        version++;
         if (newMaxTableSize < maxTableSize)
         {
             // Calculate the number of entries to be evicted so that table size is
             // under new max table size
-            int wouldbeSize = maxTableSize;
+            int wouldbeSize = tableSize;
             int noEntries = 0;
 
-            while (noEntries < table.size() && wouldbeSize > newMaxTableSize)
+            while (noEntries < count && wouldbeSize > newMaxTableSize)
             {
-                wouldbeSize -= table.get(noEntries).size;
+                wouldbeSize -= entrySize(noEntries);
                 noEntries++;
             }
             if (noEntries > 0)
             {
                 evict(noEntries);
             }
+        }
 
+        // storage is sized by the max table size, so a smaller table uses less memory
+        if (newMaxTableSize != ring.capacity() / 2)
+        {
+            resize(newMaxTableSize);
         }
 
         this.maxTableSize = newMaxTableSize;
@@ -237,34 +322,108 @@ public class HpackContext
     {
         for (int i = 0; i < noEntries; i++)
         {
-            HeaderField header = table.get(i);
-            tableSize -= header.size;
+            tableSize -= entrySize(0);
 
             if (encoding)
             {
-                Long id = noEvictions + i;
-                if (id.equals(name2Index.get(header.name)))
-                {
-                    name2Index.remove(header.name, id);
+                name2Index.remove(0, noEvictions);
+                namevalue2Index.remove(0, noEvictions);
+            }
 
-                }
-                NameValue nameValue = new NameValue(header.name, header.value);
-                if (id.equals(namevalue2Index.get(nameValue)))
-                {
-                    namevalue2Index.remove(nameValue, id);
-                }
+            head = (head + 1) % maxEntries;
+            count--;
+            noEvictions++;
+        }
+    }
+
+    private void allocate(int maxTableSize)
+    {
+        this.ring = new UnsafeBuffer(ByteBuffer.allocateDirect(2 * maxTableSize));
+        this.nameCopy = new UnsafeBuffer(new byte[maxTableSize]);
+        this.maxEntries = Math.max(maxTableSize / 32, 1);
+        this.entries = new int[3 * maxEntries];
+        if (encoding)
+        {
+            name2Index.allocate(maxEntries);
+            namevalue2Index.allocate(maxEntries);
+        }
+    }
+
+    // Moves the entries into a new ring, starting from the oldest entry at offset 0. The
+    // entries fit as they are evicted first when the table shrinks
+    private void resize(int newMaxTableSize)
+    {
+        MutableDirectBuffer oldRing = ring;
+        int[] oldEntries = entries;
+        int oldMaxEntries = maxEntries;
+
+        allocate(newMaxTableSize);
+        int offset = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int entry = 3 * ((head + i) % oldMaxEntries);
+            int length = oldEntries[entry + 1] + oldEntries[entry + 2];
+            ring.putBytes(offset, oldRing, oldEntries[entry], length);
+            entries[3 * i] = offset;
+            entries[3 * i + 1] = oldEntries[entry + 1];
+            entries[3 * i + 2] = oldEntries[entry + 2];
+            offset += length;
+        }
+        head = 0;
+        writeOffset = offset;
+
+        if (encoding)
+        {
+            // index tables are sized for the new max entries
+            for (int i = 0; i < count; i++)
+            {
+                index(i, noEvictions + i);
             }
         }
+    }
 
-        table.subList(0, noEntries).clear();
-        noEvictions += noEntries;
+    // Adds the entry (numbered from the oldest) to the index tables
+    private void index(int n, long id)
+    {
+        name2Index.put(n, id);
+        namevalue2Index.put(n, id);
+    }
+
+    private int entry(int n)
+    {
+        return 3 * ((head + n) % maxEntries);
+    }
+
+    private int offset(int n)
+    {
+        return entries[entry(n)];
+    }
+
+    private int entrySize(int n)
+    {
+        int entry = entry(n);
+        return entries[entry + 1] + entries[entry + 2] + 32;
+    }
+
+    private DirectBuffer entryName(int n)
+    {
+        int entry = entry(n);
+        nameRO.wrap(ring, entries[entry], entries[entry + 1]);
+        return nameRO;
+    }
+
+    private DirectBuffer entryValue(int n)
+    {
+        int entry = entry(n);
+        valueRO.wrap(ring, entries[entry] + entries[entry + 1], entries[entry + 2]);
+        return valueRO;
     }
 
     // @return true if the index is valid
     //         false otherwise
     public boolean valid(int index)
     {
-        return index != 0 && index < STATIC_TABLE.length + table.size();
+        return index != 0 && index < STATIC_TABLE.length + count;
     }
 
     String name(int index)
@@ -273,6 +432,10 @@ public class HpackContext
         return nameBuffer.getStringWithoutLengthUtf8(0, nameBuffer.capacity());
     }
 
+    /*
+     * @return name of the static entry, or a view of the dynamic entry's name that is
+     *         valid until the next nameBuffer() call or change to the table
+     */
     public DirectBuffer nameBuffer(int index)
     {
         if (!valid(index))
@@ -281,7 +444,7 @@ public class HpackContext
         }
         return index < STATIC_TABLE.length
                 ? STATIC_TABLE[index].name
-                : table.get(table.size() - (index - STATIC_TABLE_LENGTH) - 1).name;
+                : entryName(count - (index - STATIC_TABLE_LENGTH) - 1);
     }
 
     String value(int index)
@@ -290,6 +453,10 @@ public class HpackContext
         return valueBuffer.getStringWithoutLengthUtf8(0, valueBuffer.capacity());
     }
 
+    /*
+     * @return value of the static entry, or a view of the dynamic entry's value that is
+     *         valid until the next valueBuffer() call or change to the table
+     */
     public DirectBuffer valueBuffer(int index)
     {
         if (!valid(index))
@@ -298,7 +465,7 @@ public class HpackContext
         }
         return index < STATIC_TABLE.length
                 ? STATIC_TABLE[index].value
-                : table.get(table.size() - (index - STATIC_TABLE_LENGTH) - 1).value;
+                : entryValue(count - (index - STATIC_TABLE_LENGTH) - 1);
     }
 
     int index(String name)
@@ -313,8 +480,8 @@ public class HpackContext
         // If there is no entry in static table, look in dynamic table
         if (index == -1)
         {
-            Long id = name2Index.get(name);
-            index = (id != null) ? idToIndex(id) : -1;
+            long id = name2Index.get(name, null);
+            index = (id != NO_ID) ? idToIndex(id) : -1;
         }
         return index;
     }
@@ -333,557 +500,245 @@ public class HpackContext
         // If there is no entry in static table, look in dynamic table
         if (index == -1)
         {
-            Long id = namevalue2Index.get(new NameValue(name, value));
-            return (id != null) ? idToIndex(id) : -1;
+            long id = namevalue2Index.get(name, value);
+            return (id != NO_ID) ? idToIndex(id) : -1;
         }
         return index;
     }
 
     private int idToIndex(long id)
     {
-        return (int) (STATIC_TABLE_LENGTH + table.size() - (id - noEvictions) - 1);
+        return (int) (STATIC_TABLE_LENGTH + count - (id - noEvictions) - 1);
 
     }
 
-    private static final class NameValue
-    {
-        private final DirectBuffer name;
-        private final DirectBuffer value;
-        private final int hash;
 
-        NameValue(DirectBuffer name, DirectBuffer value)
+    // @return true if the ring has the same bytes as buffer at offset
+    private boolean ringEquals(int offset, int length, DirectBuffer buffer)
+    {
+        if (length != buffer.capacity())
         {
-            this.name = name;
-            this.value = value;
-            this.hash = Objects.hash(name, value);
+            return false;
         }
-
-        @Override
-        public boolean equals(Object obj)
+        int i = 0;
+        for (; i + 8 <= length; i += 8)
         {
-            if (obj instanceof NameValue)
+            if (ring.getLong(offset + i) != buffer.getLong(i))
             {
-                NameValue other = (NameValue) obj;
-                return Objects.equals(name, other.name) && Objects.equals(value, other.value);
+                return false;
             }
-            return false;
-        }
-
-        @Override
-        public int hashCode()
-        {
-            return hash;
-        }
-    }
-
-    /*
-     * Index in static table for (name, value). There aren't many entries with value
-     * in the static table, so simple loop for the entries corresponding to the given name.
-     *
-     * @return index in static table if present
-     *         -1 otherwise
-     */
-    private static int staticIndex(DirectBuffer name, DirectBuffer value)
-    {
-        if (name.equals(STATIC_TABLE[16].name) && value.equals(STATIC_TABLE[16].value))
-        {
-            return 16;                              // accept-encoding: gzip, deflate
         }
-
-        int start = -1, end = -1;
-        if (name.getByte(0) == ':')
+        for (; i < length; i++)
         {
-            int index = staticIndex(name);
-            switch (index)
+            if (ring.getByte(offset + i) != buffer.getByte(i))
             {
-                case 2:                             // :method
-                    start = 2; end = 3;             // GET, POST
-                    break;
-                case 4:                             // :path
-                    start = 4; end = 5;             // /, /index.html
-                    break;
-                case 6:                             // :scheme
-                    start = 6; end = 7;             // http, https
-                    break;
-                case 8:                             // :status
-                    start = 8; end = 14;            // 200, 204, 206, 304, 400, 404, 500
-                    break;
+                return false;
             }
-            if (start != -1)
-            {
-                for (int i = start; i <= end; i++)
-                {
-                    if (value.equals(STATIC_TABLE[i].value))
-                    {
-                        return i;
-                    }
-                }
-            }
-
         }
-
-        return -1;
+        return true;
     }
 
     /*
-     * Index in static table for the name. There aren't many entries, so will use
-     * the length and last byte in the name to look up the entry.
-     *
-     * @return index in static table if present
-     *         -1 otherwise
+     * Open addressing (linear probing) table of dynamic entry ids keyed by the hash of
+     * an entry's name, or of its name and value. Keys are not copied, a probe compares
+     * the looked up bytes with the entry's bytes in the ring. So lookups don't allocate.
      */
-    private static int staticIndex(DirectBuffer name)
+    private final class IndexTable
     {
-        switch (name.capacity())
-        {
-            case 3: return staticIndex3(name);
-            case 4: return staticIndex4(name);
-            case 5: return staticIndex5(name);
-            case 6: return staticIndex6(name);
-            case 7: return staticIndex7(name);
-            case 8: return staticIndex8(name);
-            case 10: return staticIndex10(name);
-            case 11: return staticIndex11(name);
-            case 12: return staticIndex12(name);
-            case 13: return staticIndex13(name);
-            case 14: return staticIndex14(name);
-            case 15: return staticIndex15(name);
-            case 16: return staticIndex16(name);
-            case 17: return staticIndex17(name);
-            case 18: return staticIndex18(name);
-            case 19: return staticIndex19(name);
-            case 25: return staticIndex25(name);
-            case 27: return staticIndex27(name);
-            default: return -1;
-        }
-    }
+        private final boolean withValue;
+        private long[] ids;
+        private long[] hashes;
+        private int mask;
 
-    // Index in static table for the given name of length 3
-    private static int staticIndex3(DirectBuffer name)
-    {
-        switch (name.getByte(2))
+        IndexTable(boolean withValue)
         {
-            case 'a':
-                if (STATIC_TABLE[60].name.equals(name))        // via
-                {
-                    return 60;
-                }
-                break;
-            case 'e':
-                if (STATIC_TABLE[21].name.equals(name))        // age
-                {
-                    return 21;
-                }
-                break;
+            this.withValue = withValue;
         }
-        return -1;
-    }
 
-    // Index in static table for the given name of length 4
-    private static int staticIndex4(DirectBuffer name)
-    {
-        switch (name.getByte(3))
+        // at least twice the max entries, so that probe sequences stay short
+        void allocate(int maxEntries)
         {
-            case 'e':
-                if (STATIC_TABLE[33].name.equals(name))    // date
-                {
-                    return 33;
-                }
-                break;
-            case 'g':
-                if (STATIC_TABLE[34].name.equals(name))    // etag
-                {
-                    return 34;
-                }
-                break;
-            case 'k':
-                if (STATIC_TABLE[45].name.equals(name))    // link
-                {
-                    return 45;
-                }
-                break;
-            case 'm':
-                if (STATIC_TABLE[37].name.equals(name))    // from
-                {
-                    return 37;
-                }
-                break;
-            case 't':
-                if (STATIC_TABLE[38].name.equals(name))    // host
-                {
-                    return 38;
-                }
-                break;
-            case 'y':
-                if (STATIC_TABLE[59].name.equals(name))    // vary
-                {
-                    return 59;
-                }
-                break;
+            int capacity = BitUtil.findNextPositivePowerOfTwo(2 * maxEntries);
+            this.ids = new long[capacity];
+            this.hashes = new long[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(ids, NO_ID);
         }
-        return -1;
-    }
 
-    // Index in static table for the given name of length 5
-    private static int staticIndex5(DirectBuffer name)
-    {
-        switch (name.getByte(4))
+        // @return id of the newest entry with the name (and value), NO_ID otherwise
+        long get(DirectBuffer name, DirectBuffer value)
         {
-            case 'e':
-                if (STATIC_TABLE[50].name.equals(name))            // range
-                {
-                    return 50;
-                }
-                break;
-            case 'h':
-                if (STATIC_TABLE[4].name.equals(name))            // path
-                {
-                    return 4;
-                }
-                break;
-            case 'w':
-                if (STATIC_TABLE[22].name.equals(name))           // allow
-                {
-                    return 22;
-                }
-                break;
-        }
-        return -1;
-    }
-
-    // Index in static table for the given name of length 6
-    private static int staticIndex6(DirectBuffer name)
-    {
-        switch (name.getByte(5))
-        {
-            case 'e':
-                if (STATIC_TABLE[32].name.equals(name))        // cookie
-                {
-                    return 32;
-                }
-                break;
-            case 'r':
-                if (STATIC_TABLE[54].name.equals(name))       // server
-                {
-                    return 54;
-                }
-                break;
-            case 't':
-                if (STATIC_TABLE[19].name.equals(name))       // accept
-                {
-                    return 19;
-                }
-                if (STATIC_TABLE[35].name.equals(name))        // expect
+            long hash = hash64(name, 0, name.capacity(), OFFSET_64);
+            if (withValue)
+            {
+                hash = hash64(value, 0, value.capacity(), hash * PRIME_64);
+            }
+            for (int slot = slot(hash); ids[slot] != NO_ID; slot = (slot + 1) & mask)
+            {
+                if (hashes[slot] == hash && matches(ids[slot], name, value))
                 {
-                    return 35;
+                    return ids[slot];
                 }
-                break;
+            }
+            return NO_ID;
         }
-        return -1;
-    }
 
-    // Index in static table for the given name of length 7
-    private static int staticIndex7(DirectBuffer name)
-    {
-        switch (name.getByte(6))
+        // Maps the entry (numbered from the oldest), replacing an older entry with the same key
+        void put(int n, long id)
         {
-            case 'd':
-                if (STATIC_TABLE[2].name.equals(name))                  // :method
-                {
-                    return 2;
-                }
-                break;
-            case 'e':
-                if (STATIC_TABLE[6].name.equals(name))                  // :scheme
-                {
-                    return 6;
-                }
-                break;
-            case 'h':
-                if (STATIC_TABLE[52].name.equals(name))                  // refresh
-                {
-                    return 52;
-                }
-                break;
-            case 'r':
-                if (STATIC_TABLE[51].name.equals(name))                 // referer
-                {
-                    return 51;
-                }
-                break;
-            case 's':
-                if (STATIC_TABLE[8].name.equals(name))                  // :status
-                {
-                    return 8;
-                }
-                if (STATIC_TABLE[36].name.equals(name))                  // expires
-                {
-                    return 36;
-                }
-                break;
+            long hash = hash(n);
+            int slot = slot(hash);
+            while (ids[slot] != NO_ID && !(hashes[slot] == hash && sameKey(ids[slot], n)))
+            {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            hashes[slot] = hash;
         }
-        return -1;
-    }
 
-    // Index in static table for the given name of length 8
-    private static int staticIndex8(DirectBuffer name)
-    {
-        switch (name.getByte(7))
+        // Unmaps the entry (numbered from the oldest) if it is still the newest one with the key
+        void remove(int n, long id)
         {
-            case 'e':
-                if (STATIC_TABLE[42].name.equals(name))                     // if-range
-                {
-                    return 42;
-                }
-                break;
-            case 'h':
-                if (STATIC_TABLE[39].name.equals(name))                     // if-match
-                {
-                    return 39;
-                }
-                break;
-            case 'n':
-                if (STATIC_TABLE[46].name.equals(name))                     // location
+            int slot = slot(hash(n));
+            while (ids[slot] != id)
+            {
+                if (ids[slot] == NO_ID)
                 {
-                    return 46;
+                    return;
                 }
-                break;
-        }
-        return -1;
-    }
+                slot = (slot + 1) & mask;
+            }
 
-    // Index in static table for the given name of length 10
-    private static int staticIndex10(DirectBuffer name)
-    {
-        switch (name.getByte(9))
-        {
-            case 'e':
-                if (STATIC_TABLE[55].name.equals(name))           // set-cookie
-                {
-                    return 55;
-                }
-                break;
-            case 't':
-                if (STATIC_TABLE[58].name.equals(name))           // user-agent
-                {
-                    return 58;
-                }
-                break;
-            case 'y':
-                if (STATIC_TABLE[1].name.equals(name))           // :authority
+            // shift back the following entries of the probe sequence into the hole
+            int hole = slot;
+            for (int next = (hole + 1) & mask; ids[next] != NO_ID; next = (next + 1) & mask)
+            {
+                int home = slot(hashes[next]);
+                if (((next - home) & mask) >= ((next - hole) & mask))
                 {
-                    return 1;
+                    ids[hole] = ids[next];
+                    hashes[hole] = hashes[next];
+                    hole = next;
                 }
-                break;
+            }
+            ids[hole] = NO_ID;
         }
-        return -1;
-    }
-
-    // Index in static table for the given name of length 11
-    private static int staticIndex11(DirectBuffer name)
-    {
-        return (name.getByte(10) == 'r' && STATIC_TABLE[53].name.equals(name)) ? 53 : -1;   // retry-after
-    }
 
-    // Index in static table for the given name of length 12
-    private static int staticIndex12(DirectBuffer name)
-    {
-        switch (name.getByte(11))
+        private int slot(long hash)
         {
-            case 'e':
-                if (STATIC_TABLE[31].name.equals(name))            // content-type
-                {
-                    return 31;
-                }
-                break;
-            case 's':
-                if (STATIC_TABLE[47].name.equals(name))            // max-forwards
-                {
-                    return 47;
-                }
-                break;
+            return (int) (hash ^ (hash >>> 32)) & mask;
         }
-        return -1;
-    }
 
-    // Index in static table for the given name of length 13
-    private static int staticIndex13(DirectBuffer name)
-    {
-        switch (name.getByte(12))
+        private long hash(int n)
         {
-            case 'd':
-                if (STATIC_TABLE[44].name.equals(name))           // last-modified
-                {
-                    return 44;
-                }
-                break;
-            case 'e':
-                if (STATIC_TABLE[30].name.equals(name))           // content-range
-                {
-                    return 30;
-                }
-                break;
-            case 'h':
-                if (STATIC_TABLE[41].name.equals(name))           // if-none-match
-                {
-                    return 41;
-                }
-                break;
-            case 'l':
-                if (STATIC_TABLE[24].name.equals(name))           // cache-control
-                {
-                    return 24;
-                }
-                break;
-            case 'n':
-                if (STATIC_TABLE[23].name.equals(name))           // authorization
-                {
-                    return 23;
-                }
-                break;
-            case 's':
-                if (STATIC_TABLE[18].name.equals(name))           // accept-ranges
-                {
-                    return 18;
-                }
-                break;
+            int entry = entry(n);
+            long hash = hash64(ring, entries[entry], entries[entry + 1], OFFSET_64);
+            if (withValue)
+            {
+                hash = hash64(ring, entries[entry] + entries[entry + 1], entries[entry + 2], hash * PRIME_64);
+            }
+            return hash;
         }
-        return -1;
-    }
 
-    // Index in static table for the given name of length 14
-    private static int staticIndex14(DirectBuffer name)
-    {
-        switch (name.getByte(13))
+        private boolean matches(long id, DirectBuffer name, DirectBuffer value)
         {
-            case 'h':
-                if (STATIC_TABLE[28].name.equals(name))          // content-length
-                {
-                    return 28;
-                }
-                break;
-            case 't':
-                if (STATIC_TABLE[15].name.equals(name))          // accept-charset
-                {
-                    return 15;
-                }
-                break;
+            int entry = entry((int) (id - noEvictions));
+            int offset = entries[entry];
+            int nameLength = entries[entry + 1];
+            return ringEquals(offset, nameLength, name) &&
+                    (!withValue || ringEquals(offset + nameLength, entries[entry + 2], value));
         }
-        return -1;
-    }
 
-    // Index in static table for the given name of length 15
-    private static int staticIndex15(DirectBuffer name)
-    {
-        switch (name.getByte(14))
+        private boolean sameKey(long id, int n)
         {
-            case 'e':
-                if (STATIC_TABLE[17].name.equals(name))         // accept-language
-                {
-                    return 17;
-                }
-                break;
-            case 'g':
-                if (STATIC_TABLE[16].name.equals(name))         // accept-encoding
-                {
-                    return 16;
-                }
-                break;
-        }
-        return -1;
-    }
-
-    // Index in static table for the given name of length 16
-    private static int staticIndex16(DirectBuffer name)
-    {
-        switch (name.getByte(15))
-        {
-            case 'e':
-                if (STATIC_TABLE[27].name.equals(name))        // content-language
-                {
-                    return 27;
-                }
-                if (STATIC_TABLE[61].name.equals(name))        // www-authenticate
-                {
-                    return 61;
-                }
-                break;
-            case 'g':
-                if (STATIC_TABLE[26].name.equals(name))        // content-encoding
-                {
-                    return 26;
-                }
-                break;
-            case 'n':
-                if (STATIC_TABLE[29].name.equals(name))        // content-location
+            int entry = entry((int) (id - noEvictions));
+            int other = entry(n);
+            if (entries[entry + 1] != entries[other + 1] || (withValue && entries[entry + 2] != entries[other + 2]))
+            {
+                return false;
+            }
+            int length = withValue
+                    ? entries[other + 1] + entries[other + 2]
+                    : entries[other + 1];
+            for (int i = 0; i < length; i++)
+            {
+                if (ring.getByte(entries[entry] + i) != ring.getByte(entries[other] + i))
                 {
-                    return 29;
+                    return false;
                 }
+            }
+            return true;
         }
-        return -1;
     }
 
-    // Index in static table for the given name of length 17
-    private static int staticIndex17(DirectBuffer name)
+    /*
+     * Index in static table for (name, value), only the entries with a value
+     * are in the table.
+     *
+     * @return index in static table if present
+     *         -1 otherwise
+     */
+    private static int staticIndex(DirectBuffer name, DirectBuffer value)
     {
-        switch (name.getByte(16))
-        {
-            case 'e':
-                if (STATIC_TABLE[40].name.equals(name))    // if-modified-since
-                {
-                    return 40;
-                }
-                break;
-            case 'g':
-                if (STATIC_TABLE[57].name.equals(name))    // transfer-encoding
-                {
-                    return 57;
-                }
-                break;
-        }
-        return -1;
+        int hash = hash32(value, 0, value.capacity(), hash32(name, 0, name.capacity(), STATIC_NAME_VALUE_SEED));
+        int index = STATIC_NAME_VALUE_INDEX[(hash ^ (hash >>> 16)) & STATIC_NAME_VALUE_MASK];
+        HeaderField field = STATIC_TABLE[index];
+        return index != 0 && field.name.equals(name) && field.value.equals(value) ? index : -1;
     }
 
-    // Index in static table for the given name of length 18
-    private static int staticIndex18(DirectBuffer name)
+    /*
+     * Index in static table for the name, the lowest index for a name that has
+     * many entries.
+     *
+     * @return index in static table if present
+     *         -1 otherwise
+     */
+    private static int staticIndex(DirectBuffer name)
     {
-        return (name.getByte(17) == 'e' && STATIC_TABLE[48].name.equals(name)) ? 48 : -1;   // proxy-authenticate
+        int hash = hash32(name, 0, name.capacity(), STATIC_NAME_SEED);
+        int index = STATIC_NAME_INDEX[(hash ^ (hash >>> 16)) & STATIC_NAME_MASK];
+        return index != 0 && STATIC_TABLE[index].name.equals(name) ? index : -1;
     }
 
-    // Index in static table for the given name of length 19
-    private static int staticIndex19(DirectBuffer name)
+    /*
+     * Finds a seed for which the hashes of the static entries' keys (names, or names
+     * and values) land in distinct slots, and fills the slot --> index table with it.
+     * So a static lookup is one hash and one compare. The tables are sparse, which
+     * makes a seed easy to find.
+     *
+     * @return seed
+     */
+    private static int perfectHash(byte[] slots, boolean withValue)
     {
-        switch (name.getByte(18))
+        int mask = slots.length - 1;
+        int seed = 0x811c9dc5;
+        for (;;)
         {
-            case 'e':
-                if (STATIC_TABLE[43].name.equals(name))    // if-unmodified-since
-                {
-                    return 43;
-                }
-                break;
-            case 'n':
-                if (STATIC_TABLE[25].name.equals(name))    // content-disposition
+            Arrays.fill(slots, (byte) 0);
+            boolean perfect = true;
+            for (int index = 1; index < STATIC_TABLE_LENGTH && perfect; index++)
+            {
+                HeaderField field = STATIC_TABLE[index];
+                if (withValue && field.value.capacity() == 0 ||
+                    !withValue && STATIC_TABLE[index - 1].name.equals(field.name))
                 {
-                    return 25;
+                    continue;
                 }
-                if (STATIC_TABLE[49].name.equals(name))    // proxy-authorization
+                int hash = hash32(field.name, 0, field.name.capacity(), seed);
+                if (withValue)
                 {
-                    return 49;
+                    hash = hash32(field.value, 0, field.value.capacity(), hash);
                 }
+                int slot = (hash ^ (hash >>> 16)) & mask;
+                perfect = slots[slot] == 0;
+                slots[slot] = (byte) index;
+            }
+            if (perfect)
+            {
+                return seed;
+            }
+            seed++;
         }
-        return -1;
-    }
-
-    // Index in static table for the given name of length 25
-    private static int staticIndex25(DirectBuffer name)
-    {
-        return (name.getByte(24) == 'y' && STATIC_TABLE[56].name.equals(name)) ? 56 : -1;   // strict-transport-security
-    }
-
-    // Index in static table for the given name of length 27
-    private static int staticIndex27(DirectBuffer name)
-    {
-        return (name.getByte(26) == 'n' && STATIC_TABLE[20].name.equals(name)) ? 20 : -1;   // access-control-allow-origi
     }
 
 }
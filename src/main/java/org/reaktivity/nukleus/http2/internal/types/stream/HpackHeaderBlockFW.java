@@ -82,6 +82,17 @@ public class HpackHeaderBlockFW extends Flyweight
             return this;
         }
 
+        // Appends header fields that are already encoded
+        public Builder block(DirectBuffer buffer, int offset, int length)
+        {
+            int limit = headersRW.limit() + length;
+            checkLimit(limit, maxLimit());
+            buffer().putBytes(headersRW.limit(), buffer, offset, length);
+            headersRW.wrap(buffer(), limit, maxLimit());
+            super.limit(limit);
+            return this;
+        }
+
         public Builder set(
                 UnboundedListFW<HttpHeaderFW> headers,
                 BiFunction<HttpHeaderFW, HpackHeaderFieldFW.Builder, HpackHeaderFieldFW> mapper)
@@ -128,6 +128,7 @@ public class HpackHeaderFieldFW extends Flyweight
     {
         private final HpackIntegerFW.Builder indexedRW = new HpackIntegerFW.Builder(7);
         private final HpackLiteralHeaderFieldFW.Builder literalRW = new HpackLiteralHeaderFieldFW.Builder();
+        private final HpackIntegerFW.Builder updateRW = new HpackIntegerFW.Builder(5);
 
         public Builder()
         {
@@ -163,6 +164,16 @@ public class HpackHeaderFieldFW extends Flyweight
             return literal(x -> x.type(WITHOUT_INDEXING).name(name).value(value));
         }
 
+        // Dynamic Table Size Update
+        public HpackHeaderFieldFW.Builder tableSize(int tableSize)
+        {
+            buffer().putByte(offset(), (byte) 0x20);
+            updateRW.wrap(buffer(), offset(), maxLimit());
+            updateRW.integer(tableSize).build();
+            limit(updateRW.limit());
+            return this;
+        }
+
     }
 
 }
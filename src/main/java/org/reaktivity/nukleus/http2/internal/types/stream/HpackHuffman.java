@@ -18,8 +18,6 @@ package org.reaktivity.nukleus.http2.internal.types.stream;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 
-import static java.nio.ByteOrder.BIG_ENDIAN;
-
 public class HpackHuffman
 {
 
@@ -289,44 +287,54 @@ public class HpackHuffman
         /*EOS (256)  |11111111|11111111|11111111|111111   */  {0x3fffffff, 30},
     };
 
-    private static final Node ROOT;
+    // Decoding state machine, one row of 256 byte transitions for each internal node
+    // of the code tree. An entry is FAILURE or packs the next state, up to two
+    // emitted symbols, the number of emitted symbols and whether the next state
+    // is a valid end of the string
+    private static final int FAILURE = -1;
+    private static final int STATE_MASK = 0xff;
+    private static final int SYMBOL1_SHIFT = 8;
+    private static final int SYMBOL2_SHIFT = 16;
+    private static final int EMIT_SHIFT = 24;
+    private static final int EMIT_MASK = 0x03;
+    private static final int ACCEPT = 1 << 26;
+
+    private static final int[] TRANSITIONS;
 
     private static final class Node
     {
+        int state;              // id of the internal node, -1 for a leaf
         int symbol;
         Node left;
         Node right;
-        Node[] transitions;     // node x byte --> node (256 transitions for byte)
-        String[] symbols;       // node x byte --> symbols (max 2 per transition)
-        boolean accept;         // valid huffman node
+        boolean accept;         // valid end of huffman string
 
         Node()
         {
+            this.state = -1;
             this.symbol = -1;
-            this.transitions = new Node[256];
-            this.symbols = new String[256];
-        }
-
-        @Override
-        public String toString()
-        {
-            return "node[sym="+(char) symbol +"]";
         }
     }
 
     static
     {
-        ROOT = new Node();
+        Node root = new Node();
+        int states = 1;
+        root.state = 0;
 
         for (int sym = 0; sym < CODES.length; sym++)
         {
-            Node current = ROOT;
+            Node current = root;
 
             int code = CODES[sym][0];
             int len = CODES[sym][1];
 
             for (int i = len - 1; i >= 0; i--)
             {
+                if (current.state == -1)
+                {
+                    current.state = states++;
+                }
                 int bit = ((code >>> i) & 0x01);        // Using MSB to traverse
                 if (bit == 0)
                 {
@@ -346,110 +354,65 @@ public class HpackHuffman
                 }
             }
             current.symbol = sym;
-            current.accept = sym != CODES.length-1;     // EOS is invalid in string literal
         }
 
-        transition(ROOT);
+        // 1 to 7 padding EOS bits
+        Node padding = root;
+        for (int i = 0; i < 8; i++)
+        {
+            padding.accept = true;
+            padding = padding.right;
+        }
 
-        ROOT.accept = true;
-        ROOT.right.accept = true;                                       // 1 padding EOS bit
-        ROOT.right.right.accept = true;                                 // 11 padding EOS bits
-        ROOT.right.right.right.accept = true;                           // 111 padding EOS bits
-        ROOT.right.right.right.right.accept = true;                     // 1111 padding EOS bits
-        ROOT.right.right.right.right.right.accept = true;               // 11111 padding EOS bits
-        ROOT.right.right.right.right.right.right.accept = true;         // 111111 padding EOS bits
-        ROOT.right.right.right.right.right.right.right.accept = true;   // 1111111 padding EOS bits
-    }
+        Node[] nodes = new Node[states];
+        index(root, nodes);
 
-    // Build all 256 Node x byte transitions
-    private static void transition(Node node)
-    {
-        if (node == null)
+        TRANSITIONS = new int[states << 8];
+        for (int state = 0; state < states; state++)
         {
-            return;
+            for (int b = 0; b < 256; b++)
+            {
+                TRANSITIONS[state << 8 | b] = transition(root, nodes[state], b);
+            }
         }
-        for(int i=0; i < 256; i++)
+    }
+
+    private static void index(Node node, Node[] nodes)
+    {
+        if (node != null && node.state != -1)
         {
-            transition(node, i);
+            nodes[node.state] = node;
+            index(node.left, nodes);
+            index(node.right, nodes);
         }
-        transition(node.left);
-        transition(node.right);
     }
 
-    // Build one Node x byte transition
-    private static void transition(Node node, int b)
+    // Builds one node x byte transition, a byte can complete at most two symbols
+    // as the shortest code is 5 bits
+    private static int transition(Node root, Node node, int b)
     {
-        Node cur = node;
-        String str = node.symbols[b];
+        Node current = node;
+        int symbols = 0;
+        int emit = 0;
 
         for (int i = 7; i >= 0; i--)
         {
-            int bit = ((b >>> i) & 0x01);           // Using MSB to traverse
-            cur = bit == 0 ? cur.left : cur.right;
-            if (cur == null || cur.symbol == 256)      // EOS is invalid in sequence
+            int bit = ((b >>> i) & 0x01);                   // Using MSB to traverse
+            current = bit == 0 ? current.left : current.right;
+            if (current == null || current.symbol == 256)   // EOS is invalid in sequence
             {
-                return;
+                return FAILURE;
             }
-            if (cur.symbol != -1)                      // Can have two symbols in a byte traversal
+            if (current.symbol != -1)
             {
-                str = (str == null) ? ""+(char)cur.symbol : str+(char)cur.symbol;
-                cur = ROOT;
-            }
-        }
-        node.transitions[b] = cur;
-        node.symbols[b] = str;
-    }
-
-    /*
-    // Searches the huffman tree for a code
-    private static int search(Node node, int code, int length) {
-
-        for(int i=length-1; i >= 0; i--) {
-            int bit = ((code >>> i) & 0x01);
-            if (bit == 0) {
-                node = node.left;
-            } else {
-                node = node.right;
-            }
-            if (node == null) {
-                throw new RuntimeException("Not there");
+                symbols |= current.symbol << (emit == 0 ? SYMBOL1_SHIFT : SYMBOL2_SHIFT);
+                emit++;
+                current = root;
             }
         }
 
-        return node.sym;
-    }
-
-
-    // Decodes by traversing huffman tree by single bits
-    public static void decode(Node root, DirectBuffer buf, int offset, int length) {
-        StringBuilder sb = new StringBuilder();
-
-        Node cur = root;
-        for (int k = 0; k < length; k++) {
-
-            byte b = buf.getByte(offset + k);
-
-            for (int i = 7; i >= 0; i--) {
-                int bit = ((b >>> i) & 0x01);
-                System.out.print(bit+" ");
-                if (bit == 0) {
-                    cur = cur.left;
-                } else {
-                    cur = cur.right;
-                }
-                if (cur == null) {
-                    throw new RuntimeException("Not there, but parsed until " + sb.toString());
-                }
-                if (cur.sym != -1) {
-                    sb.append((char)cur.sym);
-                    cur = root;
-                }
-            }
-            System.out.println();
-        }
-        System.out.println(sb.toString());
+        return current.state | symbols | emit << EMIT_SHIFT | (current.accept ? ACCEPT : 0);
     }
-    */
 
     /*
      * Based on "Fast Prefix Code Processing (by Renato Pajarola)" paper. It
@@ -458,6 +421,9 @@ public class HpackHuffman
      * in the code tree by processing bytes simultaneously instead of single
      * bits.
      *
+     * The transitions are kept in a single int[] indexed by (node << 8 | byte),
+     * so decoding does one array load per input byte.
+     *
      * https://pdfs.semanticscholar.org/3697/8e4715a7bf21426877132f5b2e9c3d280287.pdf
      *
      * @return length of decoded string
@@ -465,28 +431,31 @@ public class HpackHuffman
      */
     public static int decode(DirectBuffer src, MutableDirectBuffer dst)
     {
-        Node current = ROOT;
+        final int[] transitions = TRANSITIONS;
+        int state = 0;
+        boolean accept = true;
         int offset = 0;
 
         for (int i = 0; i < src.capacity(); i++)
         {
-            int b = src.getByte(i) & 0xff;
-            Node next = current.transitions[b];
-            if (next == null)
+            int transition = transitions[state << 8 | (src.getByte(i) & 0xff)];
+            if (transition == FAILURE)
             {
                 return -1;
             }
-            if (current.symbols[b] != null)
+            int emit = (transition >>> EMIT_SHIFT) & EMIT_MASK;
+            if (emit != 0)
             {
-                dst.putByte(offset++, (byte) current.symbols[b].charAt(0));
-                if (current.symbols[b].length() == 2)
+                dst.putByte(offset++, (byte) (transition >>> SYMBOL1_SHIFT));
+                if (emit == 2)
                 {
-                    dst.putByte(offset++, (byte) current.symbols[b].charAt(1));
+                    dst.putByte(offset++, (byte) (transition >>> SYMBOL2_SHIFT));
                 }
             }
-            current = next;
+            state = transition & STATE_MASK;
+            accept = (transition & ACCEPT) != 0;
         }
-        return current.accept ? offset : -1;
+        return accept ? offset : -1;
     }
 
     // Returns the no of bytes needed to encode src
@@ -508,44 +477,42 @@ public class HpackHuffman
     // Assumes enough space is in the dst buffer
     public static void encode(DirectBuffer src, MutableDirectBuffer dst)
     {
-        //assert dst.capacity() >= encodedSize(src, 0, src.capacity());
+        encode(src, 0, src.capacity(), dst, 0);
+    }
 
+    // Huffman encodes src bytes into dst at dstOffset, writing exactly encodedSize() bytes
+    // @return limit in dst
+    public static int encode(DirectBuffer src, int offset, int length, MutableDirectBuffer dst, int dstOffset)
+    {
+        int dstIndex = dstOffset;
         int remainingBits = 0;
-        int dstIndex = 0;
         long currentSeq = 0;       // Aligned to LSB, for e.g 0000_0000_0XXX_XXXX
 
-        for (int i = 0; i < src.capacity(); i++)
+        for (int i = 0; i < length; i++)
         {
-            int index = src.getByte(i) & 0xFF;
+            int index = src.getByte(offset + i) & 0xFF;
             int code = CODES[index][0];
             int bits = CODES[index][1];
 
-            if (remainingBits + bits > 64)                  // exceeds long (no more space for current bits)
-            {
-                dst.putLong(dstIndex, currentSeq << (64-remainingBits), BIG_ENDIAN);
-                dstIndex += (remainingBits / 8);
-                remainingBits = remainingBits % 8;
-            }
-
             currentSeq <<= bits;
             currentSeq |= code;
             remainingBits += bits;
-        }
 
-        while(remainingBits > 0)
-        {
-            if (remainingBits >= 8)
+            while (remainingBits >= 8)                      // codes are at most 30 bits, so fits in long
             {
                 remainingBits -= 8;
-                dst.putByte(dstIndex++, (byte)(currentSeq >> remainingBits));
-            }
-            else
-            {
-                currentSeq <<= (8 - remainingBits);            // partial byte, so align to MSB
-                currentSeq |= (0xFF >>> remainingBits);        // fill remaining bits with EOS bits
-                remainingBits = 8;
+                dst.putByte(dstIndex++, (byte) (currentSeq >> remainingBits));
             }
         }
+
+        if (remainingBits > 0)
+        {
+            currentSeq <<= (8 - remainingBits);            // partial byte, so align to MSB
+            currentSeq |= (0xFF >>> remainingBits);        // fill remaining bits with EOS bits
+            dst.putByte(dstIndex++, (byte) currentSeq);
+        }
+
+        return dstIndex;
     }
 
 }
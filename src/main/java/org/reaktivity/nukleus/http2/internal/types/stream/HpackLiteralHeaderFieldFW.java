@@ -239,8 +239,18 @@ public class HpackLiteralHeaderFieldFW extends Flyweight
         }
 
         public HpackLiteralHeaderFieldFW.Builder name(DirectBuffer nameBuffer, int offset, int length)
+        {
+            return name(nameBuffer, offset, length, false);
+        }
+
+        // @param huffman name is Huffman encoded if that is shorter
+        public HpackLiteralHeaderFieldFW.Builder name(DirectBuffer nameBuffer, int offset, int length, boolean huffman)
         {
             nameRW.wrap(buffer(), offset() + 1, maxLimit());
+            if (huffman)
+            {
+                nameRW.huffman();
+            }
             nameRW.string(nameBuffer, offset, length);
             valueRW.wrap(buffer(), nameRW.limit(), maxLimit());
             return this;
@@ -261,6 +271,16 @@ public class HpackLiteralHeaderFieldFW extends Flyweight
 
         public HpackLiteralHeaderFieldFW.Builder value(DirectBuffer valueBuffer, int offset, int length)
         {
+            return value(valueBuffer, offset, length, false);
+        }
+
+        // @param huffman value is Huffman encoded if that is shorter
+        public HpackLiteralHeaderFieldFW.Builder value(DirectBuffer valueBuffer, int offset, int length, boolean huffman)
+        {
+            if (huffman)
+            {
+                valueRW.huffman();
+            }
             valueRW.string(valueBuffer, offset, length);
             limit(valueRW.limit());
             return this;
@@ -93,15 +93,28 @@ public class HpackStringFW extends Flyweight
             return this;
         }
 
+        // string is Huffman encoded, if that is shorter
         public HpackStringFW.Builder huffman()
         {
-            throw new UnsupportedOperationException("TODO");
-//            buffer().putByte(offset(), (byte) 0x80);
-//            return this;
+            buffer().putByte(offset(), (byte) 0x80);
+            return this;
         }
 
         public HpackStringFW.Builder string(DirectBuffer value, int offset, int length)
         {
+            if ((buffer().getByte(offset()) & 0x80) != 0)
+            {
+                int encodedLength = HpackHuffman.encodedSize(value, offset, length);
+                if (encodedLength < length)
+                {
+                    integerRW.integer(encodedLength);
+                    limit(HpackHuffman.encode(value, offset, length, buffer(), integerRW.limit()));
+
+                    return this;
+                }
+                buffer().putByte(offset(), (byte) 0x00);
+            }
+
             integerRW.integer(length);
             buffer().putBytes(integerRW.limit(), value, offset, length);
             limit(integerRW.limit() + length);
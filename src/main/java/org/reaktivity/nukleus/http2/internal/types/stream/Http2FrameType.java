@@ -27,7 +27,8 @@ public enum Http2FrameType
     PING(6),
     GO_AWAY(7),
     WINDOW_UPDATE(8),
-    CONTINUATION(9);
+    CONTINUATION(9),
+    PRIORITY_UPDATE(16);
 
     private final byte type;
 
@@ -55,6 +56,7 @@ public enum Http2FrameType
             case 7 : return GO_AWAY;
             case 8 : return WINDOW_UPDATE;
             case 9 : return CONTINUATION;
+            case 16 : return PRIORITY_UPDATE;
             default: return UNKNOWN;
         }
     }
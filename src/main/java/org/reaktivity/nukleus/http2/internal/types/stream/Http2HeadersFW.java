@@ -110,6 +110,34 @@ public class Http2HeadersFW extends Http2FrameFW
         }
     }
 
+    public boolean exclusive()
+    {
+        return priority() && (buffer().getByte(dependencyOffset()) & 0x80) != 0;
+    }
+
+    public int weight()
+    {
+        if (priority())
+        {
+            int weight = buffer().getByte(dependencyOffset() + 4) & 0xFF;
+            return weight + 1;      // 1 ... 256
+        }
+        else
+        {
+            return 16;              // default weight
+        }
+    }
+
+    private int dependencyOffset()
+    {
+        int dependencyOffset = offset() + PAYLOAD_OFFSET;
+        if (padded())
+        {
+            dependencyOffset++;     // +1 for Pad Length
+        }
+        return dependencyOffset;
+    }
+
     public int dataLength()
     {
         int dataLength = payloadLength();
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal.types.stream;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType.PRIORITY_UPDATE;
+
+/*
+
+    Flyweight for HTTP2 PRIORITY_UPDATE frame (RFC 9218 7.1)
+
+    +-----------------------------------------------+
+    |                 Length (24)                   |
+    +---------------+---------------+---------------+
+    |   Type (8)    |   Flags (8)   |
+    +-+-------------+---------------+-------------------------------+
+    |R|                 Stream Identifier (31)                      |
+    +=+=============================================================+
+    |R|                Prioritized Stream ID (31)                   |
+    +-+-------------------------------------------------------------+
+    |                 Priority Field Value (*)                    ...
+    +---------------------------------------------------------------+
+
+ */
+public class Http2PriorityUpdateFW extends Http2FrameFW
+{
+    private static final int PAYLOAD_OFFSET = 9;
+
+    @Override
+    public Http2FrameType type()
+    {
+        return PRIORITY_UPDATE;
+    }
+
+    public int prioritizedStream()
+    {
+        return buffer().getInt(offset() + PAYLOAD_OFFSET, BIG_ENDIAN) & 0x7F_FF_FF_FF;
+    }
+
+    public int priorityOffset()
+    {
+        return offset() + PAYLOAD_OFFSET + 4;
+    }
+
+    public int priorityLength()
+    {
+        return payloadLength() - 4;
+    }
+
+    @Override
+    public Http2PriorityUpdateFW wrap(DirectBuffer buffer, int offset, int maxLimit)
+    {
+        super.wrap(buffer, offset, maxLimit);
+
+        int streamId = super.streamId();
+        if (streamId != 0)
+        {
+            throw new IllegalArgumentException(
+                    String.format("Invalid PRIORITY_UPDATE frame stream-id=%d (must be 0)", streamId));
+        }
+
+        Http2FrameType type = super.type();
+        if (type != PRIORITY_UPDATE)
+        {
+            throw new IllegalArgumentException(String.format("Invalid PRIORITY_UPDATE frame type=%s", type));
+        }
+
+        int payloadLength = super.payloadLength();
+        if (payloadLength < 4)
+        {
+            throw new IllegalArgumentException(
+                    String.format("Invalid PRIORITY_UPDATE frame length=%d (must be at least 4)", payloadLength));
+        }
+        checkLimit(limit(), maxLimit);
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s frame <length=%s, type=%s, flags=%s, id=%s>",
+                type(), payloadLength(), type(), flags(), streamId());
+    }
+
+    public static final class Builder extends Http2FrameFW.Builder<Builder, Http2PriorityUpdateFW>
+    {
+
+        public Builder()
+        {
+            super(new Http2PriorityUpdateFW());
+        }
+
+        @Override
+        public Builder wrap(MutableDirectBuffer buffer, int offset, int maxLimit)
+        {
+            super.wrap(buffer, offset, maxLimit);
+            payloadLength(4);
+            return this;
+        }
+
+        public Builder prioritizedStream(int prioritizedStreamId)
+        {
+            buffer().putInt(offset() + PAYLOAD_OFFSET, prioritizedStreamId, BIG_ENDIAN);
+            return this;
+        }
+
+        public Builder priority(String priority)
+        {
+            byte[] bytes = priority.getBytes(US_ASCII);
+            buffer().putBytes(offset() + PAYLOAD_OFFSET + 4, bytes);
+            payloadLength(4 + bytes.length);
+            return this;
+        }
+
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal.util;
+
+import org.agrona.DirectBuffer;
+
+/*
+ * FNV-1a hashes of a buffer's bytes. A hash can be continued over more bytes
+ * by passing it back, e.g. to hash a header's name and value together.
+ */
+public final class Fnv1a
+{
+    public static final long OFFSET_64 = 0xcbf29ce484222325L;
+    public static final long PRIME_64 = 0x100000001b3L;
+
+    private static final int PRIME_32 = 0x01000193;
+
+    public static long hash64(DirectBuffer buffer, int offset, int length)
+    {
+        return hash64(buffer, offset, length, OFFSET_64);
+    }
+
+    // 64-bit FNV-1a hash of the buffer's bytes, starting from the given hash
+    public static long hash64(DirectBuffer buffer, int offset, int length, long hash)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            hash ^= buffer.getByte(offset + i) & 0xff;
+            hash *= PRIME_64;
+        }
+        return hash;
+    }
+
+    // 32-bit FNV-1a hash of the buffer's bytes, starting from the seed
+    public static int hash32(DirectBuffer buffer, int offset, int length, int hash)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            hash ^= buffer.getByte(offset + i) & 0xff;
+            hash *= PRIME_32;
+        }
+        return hash;
+    }
+
+    private Fnv1a()
+    {
+        // utility class
+    }
+
+}
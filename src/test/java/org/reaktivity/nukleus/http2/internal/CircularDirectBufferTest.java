@@ -108,4 +108,22 @@ public class CircularDirectBufferTest
         return part1 + part2;
     }
 
+    @Test
+    public void clear()
+    {
+        int capacity = 100;
+        MutableDirectBuffer src = new UnsafeBuffer(new byte[capacity]);
+        MutableDirectBuffer dst = new UnsafeBuffer(new byte[capacity]);
+
+        CircularDirectBuffer cb = new CircularDirectBuffer(capacity);
+        assertEquals(60, cb.writeContiguous(dst, src, 0, 60));
+        assertEquals(60, read(cb, 60));
+        cb.clear();
+
+        // reused buffer starts at the beginning again
+        assertEquals(0, cb.readOffset());
+        assertEquals(60, cb.writeContiguous(dst, src, 0, 60));
+        assertEquals(60, cb.size());
+    }
+
 }
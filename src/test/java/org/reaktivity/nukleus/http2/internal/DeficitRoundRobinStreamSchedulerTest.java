@@ -0,0 +1,145 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeficitRoundRobinStreamSchedulerTest
+{
+    private static final int QUANTUM = 4096;
+    private static final int MAX_FRAME_SIZE = 16384;
+
+    @Test
+    public void fairness()
+    {
+        DeficitRoundRobinStreamScheduler scheduler = new DeficitRoundRobinStreamScheduler(QUANTUM);
+        scheduler.add(1);
+        scheduler.add(3);
+        scheduler.add(5);
+        scheduler.ready(1);
+        scheduler.ready(3);
+        scheduler.ready(5);
+
+        // large download writes max size frames, the others write small frames
+        int[] frameSizes = new int[6];
+        frameSizes[1] = MAX_FRAME_SIZE;
+        frameSizes[3] = 1000;
+        frameSizes[5] = 100;
+
+        long[] written = new long[6];
+        for (int i = 0; i < 10000; i++)
+        {
+            int streamId = scheduler.select(s -> true);
+            written[streamId] += frameSizes[streamId];
+            scheduler.charge(streamId, frameSizes[streamId]);
+
+            // bytes written by the streams differ by at most a turn
+            long max = Math.max(written[1], Math.max(written[3], written[5]));
+            long min = Math.min(written[1], Math.min(written[3], written[5]));
+            assertTrue(max - min <= QUANTUM + 2 * MAX_FRAME_SIZE);
+        }
+    }
+
+    @Test
+    public void headOfLineDelay()
+    {
+        DeficitRoundRobinStreamScheduler scheduler = new DeficitRoundRobinStreamScheduler(QUANTUM);
+        scheduler.add(1);
+        scheduler.add(3);
+        scheduler.add(5);
+        scheduler.ready(1);
+        scheduler.ready(3);
+        for (int i = 0; i < 100; i++)
+        {
+            int streamId = scheduler.select(s -> true);
+            scheduler.charge(streamId, MAX_FRAME_SIZE);
+        }
+
+        // newly ready stream waits for at most one turn of each of the other streams
+        scheduler.ready(5);
+        long delay = 0;
+        int streamId;
+        while ((streamId = scheduler.select(s -> true)) != 5)
+        {
+            scheduler.charge(streamId, MAX_FRAME_SIZE);
+            delay += MAX_FRAME_SIZE;
+        }
+        assertTrue(delay <= 2 * (QUANTUM + MAX_FRAME_SIZE));
+    }
+
+    @Test
+    public void overrunIsPaidBack()
+    {
+        DeficitRoundRobinStreamScheduler scheduler = new DeficitRoundRobinStreamScheduler(QUANTUM);
+        scheduler.add(1);
+        scheduler.add(3);
+        scheduler.ready(1);
+        scheduler.ready(3);
+
+        assertEquals(1, scheduler.select(s -> true));
+        scheduler.charge(1, 3 * QUANTUM);
+        assertEquals(-2 * QUANTUM, scheduler.deficit(1));
+
+        // stream 1 skips its turns until stream 3 catches up
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(3, scheduler.select(s -> true));
+            scheduler.charge(3, QUANTUM);
+        }
+        assertEquals(1, scheduler.select(s -> true));
+    }
+
+    @Test
+    public void ready()
+    {
+        DeficitRoundRobinStreamScheduler scheduler = new DeficitRoundRobinStreamScheduler(QUANTUM);
+        scheduler.add(1);
+        scheduler.add(3);
+
+        assertEquals(0, scheduler.select(s -> true));
+
+        scheduler.ready(1);
+        scheduler.ready(1);
+        scheduler.ready(3);
+        assertEquals(1, scheduler.select(s -> true));
+        assertEquals(3, scheduler.select(s -> s != 1));
+        assertEquals(0, scheduler.select(s -> false));
+
+        // unused deficit is not kept while blocked
+        scheduler.blocked(1);
+        scheduler.blocked(1);
+        assertEquals(0, scheduler.deficit(1));
+        assertEquals(3, scheduler.select(s -> true));
+
+        scheduler.remove(3);
+        assertEquals(0, scheduler.select(s -> true));
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    public void ignoresPrioritySignals()
+    {
+        DeficitRoundRobinStreamScheduler scheduler = new DeficitRoundRobinStreamScheduler(QUANTUM);
+        scheduler.priority(3, 1, 256, true);
+        scheduler.urgency(5, 0, false);
+
+        assertEquals(0, scheduler.size());
+    }
+
+}
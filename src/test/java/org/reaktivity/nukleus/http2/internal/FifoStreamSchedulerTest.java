@@ -0,0 +1,67 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FifoStreamSchedulerTest
+{
+
+    @Test
+    public void readyOrder()
+    {
+        FifoStreamScheduler scheduler = new FifoStreamScheduler();
+        scheduler.add(5);
+        scheduler.add(1);
+        scheduler.add(3);
+
+        assertEquals(0, scheduler.select(s -> true));
+
+        scheduler.ready(5);
+        scheduler.ready(1);
+        scheduler.ready(5);
+        scheduler.ready(3);
+
+        // stream keeps its turn until it is blocked
+        assertEquals(5, scheduler.select(s -> true));
+        scheduler.charge(5, 1000);
+        assertEquals(5, scheduler.select(s -> true));
+        assertEquals(1, scheduler.select(s -> s != 5));
+
+        scheduler.blocked(5);
+        scheduler.blocked(5);
+        assertEquals(1, scheduler.select(s -> true));
+
+        scheduler.ready(5);
+        scheduler.remove(1);
+        assertEquals(3, scheduler.select(s -> true));
+        assertEquals(0, scheduler.select(s -> false));
+        assertEquals(2, scheduler.size());
+    }
+
+    @Test
+    public void ignoresPrioritySignals()
+    {
+        FifoStreamScheduler scheduler = new FifoStreamScheduler();
+        scheduler.priority(3, 1, 256, true);
+        scheduler.urgency(5, 0, false);
+
+        assertEquals(0, scheduler.size());
+    }
+
+}
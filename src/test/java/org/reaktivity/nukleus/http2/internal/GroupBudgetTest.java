@@ -0,0 +1,152 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import org.agrona.collections.Long2LongHashMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GroupBudgetTest
+{
+    // like the runtime, only the groups that it has a budget for are updated
+    private final Long2LongHashMap budgets = new Long2LongHashMap(-1);
+
+    private final GroupBudget groupBudget = new GroupBudget(
+        groupId -> claim ->
+        {
+            int claimed = (int) Math.min(claim, budget(groupId));
+            if (budgets.containsKey(groupId))
+            {
+                budgets.put(groupId, budget(groupId) - claimed);
+            }
+            return claimed;
+        },
+        groupId -> credit ->
+        {
+            if (budgets.containsKey(groupId))
+            {
+                budgets.put(groupId, budget(groupId) + credit);
+            }
+            return (int) budget(groupId) + credit;
+        });
+
+    private int runs;
+
+    @Test
+    public void claimsDataAndPadding()
+    {
+        budgets.put(1, 100);
+
+        assertEquals(60, groupBudget.claim(1, 60, 10));
+        assertEquals(30, budget(1));
+        assertEquals(20, groupBudget.claim(1, 60, 10));
+        assertEquals(0, budget(1));
+    }
+
+    @Test
+    public void givesBackClaimBelowPadding()
+    {
+        budgets.put(1, 8);
+
+        assertEquals(0, groupBudget.claim(1, 60, 10));
+        assertEquals(8, budget(1));
+
+        budgets.put(1, 18);
+        assertEquals(8, groupBudget.claim(1, 60, 10));
+        assertEquals(0, budget(1));
+    }
+
+    @Test
+    public void hasNoBudgetForUnknownGroup()
+    {
+        assertEquals(GroupBudget.NO_BUDGET, groupBudget.claim(1, 60, 10));
+        assertEquals(0, budget(1));
+    }
+
+    @Test
+    public void waitsOnExhaustedGroup()
+    {
+        budgets.put(1, 70);
+        assertEquals(60, groupBudget.claim(1, 60, 10));
+
+        // group had a budget, so it is still managed by the runtime
+        assertEquals(0, groupBudget.claim(1, 60, 10));
+    }
+
+    @Test
+    public void retriesWaiterOnce()
+    {
+        Runnable waiter = () -> runs++;
+        groupBudget.await(1, waiter);
+        groupBudget.await(2, waiter);
+
+        groupBudget.signal(1);
+        assertEquals(1, runs);
+        assertEquals(0, groupBudget.waiting(1));
+        assertEquals(1, groupBudget.waiting(2));
+
+        groupBudget.signal(1);
+        assertEquals(1, runs);
+    }
+
+    @Test
+    public void waitsAgainWhileRunning()
+    {
+        Runnable[] waiter = new Runnable[1];
+        waiter[0] = () ->
+        {
+            runs++;
+            groupBudget.await(1, waiter[0]);
+        };
+        groupBudget.await(1, waiter[0]);
+
+        groupBudget.signal(1);
+        assertEquals(1, runs);
+        assertEquals(1, groupBudget.waiting(1));
+
+        groupBudget.signal(1);
+        assertEquals(2, runs);
+    }
+
+    @Test
+    public void cancelsWaiter()
+    {
+        Runnable waiter1 = () -> runs++;
+        Runnable waiter2 = () -> runs += 10;
+        groupBudget.await(1, waiter1);
+        groupBudget.await(1, waiter2);
+
+        groupBudget.cancel(1, waiter1);
+        assertEquals(1, groupBudget.waiting(1));
+
+        groupBudget.cancel(1, waiter2);
+        assertEquals(0, groupBudget.waiting(1));
+
+        groupBudget.signal(1);
+        assertEquals(0, runs);
+
+        // cancelling a waiter that is not waiting is a no-op
+        groupBudget.cancel(1, waiter1);
+        assertEquals(0, groupBudget.waiting(1));
+    }
+
+    private long budget(long groupId)
+    {
+        return budgets.containsKey(groupId) ? budgets.get(groupId) : 0;
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+public class HeaderBlockCacheTest
+{
+
+    @Test
+    public void replay()
+    {
+        HeaderBlockCache cache = new HeaderBlockCache(2);
+        DirectBuffer headers = buffer("xx:status200");
+        DirectBuffer block = buffer("x\u0088");
+        cache.store(headers, 2, headers.capacity() - 2, 0L, block, 1, 1);
+
+        int entry = cache.lookup(buffer(":status200"), 0, 10, 0L);
+        assertEquals(0, entry);
+        assertEquals(1, cache.blockLength(entry));
+        assertEquals(block.getByte(1), cache.block(entry).getByte(0));
+
+        // encoder table changed since the block was encoded
+        assertEquals(-1, cache.lookup(buffer(":status200"), 0, 10, 1L));
+        assertEquals(-1, cache.lookup(buffer(":status204"), 0, 10, 0L));
+    }
+
+    @Test
+    public void leastRecentlyUsed()
+    {
+        HeaderBlockCache cache = new HeaderBlockCache(2);
+        DirectBuffer block = buffer("block");
+        store(cache, "headers1", block);
+        store(cache, "headers2", block);
+        assertEquals(0, lookup(cache, "headers1"));
+
+        store(cache, "headers3", block);
+        assertEquals(0, lookup(cache, "headers1"));
+        assertEquals(-1, lookup(cache, "headers2"));
+        assertEquals(1, lookup(cache, "headers3"));
+
+        // same headers replace the block of the entry
+        cache.store(buffer("headers3"), 0, 8, 5L, buffer("other"), 0, 3);
+        assertEquals(1, cache.lookup(buffer("headers3"), 0, 8, 5L));
+        assertEquals(3, cache.blockLength(1));
+    }
+
+    @Test
+    public void longerEntry()
+    {
+        HeaderBlockCache cache = new HeaderBlockCache(1);
+        store(cache, "h1", buffer("b1"));
+        store(cache, "headers2", buffer("block2"));
+
+        assertEquals(-1, lookup(cache, "h1"));
+        assertEquals(0, lookup(cache, "headers2"));
+        assertEquals(6, cache.blockLength(0));
+        assertEquals("block2", cache.block(0).getStringWithoutLengthUtf8(0, 6));
+    }
+
+    @Test
+    public void notCached()
+    {
+        HeaderBlockCache cache = new HeaderBlockCache(2);
+        DirectBuffer large = new UnsafeBuffer(new byte[HeaderBlockCache.MAX_LENGTH + 1]);
+        cache.store(large, 0, large.capacity(), 0L, buffer("block"), 0, 5);
+        assertEquals(-1, cache.lookup(large, 0, large.capacity(), 0L));
+
+        HeaderBlockCache disabled = new HeaderBlockCache(0);
+        store(disabled, "headers1", buffer("block"));
+        assertEquals(-1, lookup(disabled, "headers1"));
+    }
+
+    private static void store(HeaderBlockCache cache, String headers, DirectBuffer block)
+    {
+        DirectBuffer buffer = buffer(headers);
+        cache.store(buffer, 0, buffer.capacity(), 0L, block, 0, block.capacity());
+    }
+
+    private static int lookup(HeaderBlockCache cache, String headers)
+    {
+        DirectBuffer buffer = buffer(headers);
+        return cache.lookup(buffer, 0, buffer.capacity(), 0L);
+    }
+
+    private static DirectBuffer buffer(String str)
+    {
+        return new UnsafeBuffer(str.getBytes(UTF_8));
+    }
+
+}
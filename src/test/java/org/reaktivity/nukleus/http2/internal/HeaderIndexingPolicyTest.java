@@ -0,0 +1,121 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+import org.reaktivity.nukleus.http2.internal.types.stream.HpackContext;
+import org.reaktivity.nukleus.http2.internal.types.stream.HpackLiteralHeaderFieldFW.LiteralType;
+
+public class HeaderIndexingPolicyTest
+{
+    private static final String NEVER_INDEXED = "authorization,proxy-authorization,cookie,set-cookie";
+
+    @Test
+    public void indexesRepeatingFields()
+    {
+        HeaderIndexingPolicy policy = new HeaderIndexingPolicy(true, 0, NEVER_INDEXED, "");
+        HpackContext context = new HpackContext(4096, true);
+
+        assertTrue(policy.index(context, buffer("content-type"), buffer("application/json")));
+        assertTrue(policy.index(context, buffer("server"), buffer("reaktivity")));
+        assertTrue(policy.index(context, buffer("x-custom"), buffer("value")));
+    }
+
+    @Test
+    public void skipsUniqueValues()
+    {
+        HeaderIndexingPolicy policy = new HeaderIndexingPolicy(true, 0, NEVER_INDEXED, "");
+        HpackContext context = new HpackContext(4096, true);
+
+        assertFalse(policy.index(context, buffer("content-length"), buffer("1234")));
+        assertFalse(policy.index(context, buffer("date"), buffer("Sun, 18 Oct 2026 10:00:00 GMT")));
+        assertFalse(policy.index(context, buffer("etag"), buffer("\"abc\"")));
+    }
+
+    @Test
+    public void skipsLargeFields()
+    {
+        HeaderIndexingPolicy policy = new HeaderIndexingPolicy(true, 0, NEVER_INDEXED, "");
+
+        assertFalse(policy.index(new HpackContext(4096, true), buffer("x-large"), new UnsafeBuffer(new byte[1000])));
+        assertFalse(policy.index(new HpackContext(0, true), buffer("server"), buffer("reaktivity")));
+    }
+
+    @Test
+    public void disabled()
+    {
+        HeaderIndexingPolicy policy = new HeaderIndexingPolicy(false, 0, NEVER_INDEXED, "");
+
+        assertFalse(policy.index(new HpackContext(4096, true), buffer("server"), buffer("reaktivity")));
+    }
+
+    @Test
+    public void neverIndexesSensitiveFields()
+    {
+        HeaderIndexingPolicy policy = new HeaderIndexingPolicy(false, 0, NEVER_INDEXED + ", X-Api-Key", "");
+        HpackContext context = new HpackContext(4096, true);
+
+        assertEquals(LiteralType.NEVER_INDEXED, policy.literalType(context, buffer("set-cookie"), buffer("id=1")));
+        assertEquals(LiteralType.NEVER_INDEXED, policy.literalType(context, buffer("authorization"), buffer("Basic YQ==")));
+        assertEquals(LiteralType.NEVER_INDEXED, policy.literalType(context, buffer("x-api-key"), buffer("secret")));
+        assertEquals(LiteralType.WITHOUT_INDEXING, policy.literalType(context, buffer("server"), buffer("reaktivity")));
+    }
+
+    @Test
+    public void literalType()
+    {
+        HeaderIndexingPolicy policy = new HeaderIndexingPolicy(true, 0, "", "");
+        HpackContext context = new HpackContext(4096, true);
+
+        assertEquals(LiteralType.INCREMENTAL_INDEXING, policy.literalType(context, buffer("server"), buffer("reaktivity")));
+        assertEquals(LiteralType.WITHOUT_INDEXING, policy.literalType(context, buffer("date"), buffer("today")));
+        assertEquals(LiteralType.INCREMENTAL_INDEXING, policy.literalType(context, buffer("cookie"), buffer("id=1")));
+    }
+
+    @Test
+    public void skipsLongValues()
+    {
+        HeaderIndexingPolicy policy = new HeaderIndexingPolicy(true, 8, NEVER_INDEXED, "");
+        HpackContext context = new HpackContext(4096, true);
+
+        assertTrue(policy.index(context, buffer("x-custom"), buffer("12345678")));
+        assertFalse(policy.index(context, buffer("x-custom"), buffer("123456789")));
+    }
+
+    @Test
+    public void skipsConfiguredUniqueValues()
+    {
+        HeaderIndexingPolicy policy = new HeaderIndexingPolicy(true, 0, NEVER_INDEXED, "x-request-id, x-trace-id");
+        HpackContext context = new HpackContext(4096, true);
+
+        assertFalse(policy.index(context, buffer("x-request-id"), buffer("f81d4fae")));
+        assertFalse(policy.index(context, buffer("x-trace-id"), buffer("4bf92f35")));
+        assertTrue(policy.index(context, buffer("x-custom"), buffer("value")));
+    }
+
+    private static DirectBuffer buffer(String str)
+    {
+        return new UnsafeBuffer(str.getBytes(UTF_8));
+    }
+
+}
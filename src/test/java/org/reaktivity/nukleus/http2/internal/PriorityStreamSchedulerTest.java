@@ -0,0 +1,207 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PriorityStreamSchedulerTest
+{
+
+    @Test
+    public void weights()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(100);
+        scheduler.priority(1, 0, 192, false);
+        scheduler.priority(3, 0, 64, false);
+        scheduler.ready(1);
+        scheduler.ready(3);
+
+        int[] selected = new int[4];
+        for (int i = 0; i < 400; i++)
+        {
+            int streamId = scheduler.select(s -> true);
+            selected[streamId]++;
+            scheduler.charge(streamId, 1000);
+        }
+
+        // bytes are shared in 3:1 proportion
+        assertEquals(300, selected[1], 1);
+        assertEquals(100, selected[3], 1);
+    }
+
+    @Test
+    public void dependency()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(100);
+        scheduler.add(1);
+        scheduler.priority(3, 1, 16, false);
+        scheduler.add(5);
+        scheduler.ready(1);
+        scheduler.ready(3);
+        scheduler.ready(5);
+
+        // parent stream 1 blocks its dependent stream 3, but not stream 5
+        assertEquals(1, scheduler.select(s -> true));
+        scheduler.charge(1, 1000);
+        assertEquals(5, scheduler.select(s -> true));
+
+        // stream 3 gets the resources if stream 1 cannot proceed
+        assertEquals(3, scheduler.select(s -> s == 3));
+        assertEquals(0, scheduler.select(s -> s == 7));
+    }
+
+    @Test
+    public void ready()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(100);
+        scheduler.add(1);
+        scheduler.priority(3, 1, 16, false);
+        scheduler.priority(5, 3, 16, false);
+        scheduler.add(7);
+
+        assertEquals(0, scheduler.select(s -> true));
+
+        scheduler.ready(5);
+        scheduler.ready(5);
+        scheduler.ready(7);
+        assertEquals(2, scheduler.active());
+        assertEquals(5, scheduler.select(s -> true));
+
+        scheduler.blocked(5);
+        assertEquals(7, scheduler.select(s -> true));
+
+        // ready streams in the subtree move along with the reprioritized stream
+        scheduler.ready(5);
+        scheduler.priority(3, 7, 16, true);
+        assertEquals(2, scheduler.active());
+        assertEquals(7, scheduler.select(s -> true));
+        assertEquals(5, scheduler.select(s -> s != 7));
+
+        scheduler.remove(3);
+        scheduler.remove(7);
+        assertEquals(1, scheduler.active());
+        assertEquals(5, scheduler.select(s -> true));
+
+        scheduler.blocked(5);
+        scheduler.blocked(5);
+        assertEquals(0, scheduler.active());
+        assertEquals(0, scheduler.select(s -> true));
+    }
+
+    @Test
+    public void exclusive()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(100);
+        scheduler.add(1);
+        scheduler.priority(3, 1, 16, false);
+        scheduler.priority(5, 1, 16, false);
+        scheduler.priority(7, 1, 32, true);
+
+        assertEquals(1, scheduler.parent(7));
+        assertEquals(7, scheduler.parent(3));
+        assertEquals(7, scheduler.parent(5));
+        assertEquals(32, scheduler.weight(7));
+    }
+
+    @Test
+    public void dependentOnDescendant()
+    {
+        // RFC 7540 5.3.3 example: A is made dependent on its descendant D
+        int a = 1;
+        int b = 3;
+        int c = 5;
+        int d = 7;
+        int e = 9;
+        int f = 11;
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(100);
+        scheduler.priority(a, 0, 16, false);
+        scheduler.priority(b, a, 16, false);
+        scheduler.priority(c, a, 16, false);
+        scheduler.priority(d, c, 16, false);
+        scheduler.priority(e, c, 16, false);
+        scheduler.priority(f, d, 16, false);
+
+        scheduler.priority(a, d, 16, false);
+
+        assertEquals(0, scheduler.parent(d));
+        assertEquals(d, scheduler.parent(a));
+        assertEquals(d, scheduler.parent(f));
+        assertEquals(a, scheduler.parent(b));
+        assertEquals(a, scheduler.parent(c));
+        assertEquals(c, scheduler.parent(e));
+
+        scheduler.priority(a, d, 16, true);
+
+        assertEquals(d, scheduler.parent(a));
+        assertEquals(a, scheduler.parent(f));
+    }
+
+    @Test
+    public void remove()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(100);
+        scheduler.priority(1, 0, 32, false);
+        scheduler.priority(3, 1, 48, false);
+        scheduler.priority(5, 1, 16, false);
+
+        scheduler.remove(1);
+
+        // dependencies move to the parent, sharing the weight of the removed stream
+        assertEquals(-1, scheduler.parent(1));
+        assertEquals(0, scheduler.parent(3));
+        assertEquals(0, scheduler.parent(5));
+        assertEquals(24, scheduler.weight(3));
+        assertEquals(8, scheduler.weight(5));
+    }
+
+    @Test
+    public void unknownParent()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(100);
+        scheduler.priority(3, 1, 64, true);
+
+        // default priority
+        assertEquals(0, scheduler.parent(3));
+        assertEquals(PriorityStreamScheduler.DEFAULT_WEIGHT, scheduler.weight(3));
+    }
+
+    @Test
+    public void ignoresUrgency()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(100);
+        scheduler.urgency(1, 0, true);
+
+        assertEquals(-1, scheduler.parent(1));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void maxNodes()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler(2);
+        scheduler.priority(1, 0, 16, false);
+        scheduler.priority(3, 0, 16, false);
+        scheduler.priority(5, 0, 16, false);
+        scheduler.add(7);
+
+        assertEquals(-1, scheduler.parent(5));
+        assertEquals(0, scheduler.parent(7));
+        assertEquals(3, scheduler.size());
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReceiveWindowTunerTest
+{
+
+    @Test
+    public void grows()
+    {
+        ReceiveWindowTuner tuner = new ReceiveWindowTuner(65535, 1_000_000);
+        tuner.onData(16384);
+        assertTrue(tuner.ping(100));
+        assertFalse(tuner.ping(150));       // one PING at a time
+
+        // peer uses most of the window in a round trip
+        tuner.onData(60000);
+        assertEquals(120000 - 65535, tuner.onPingAck(100, 1100));
+        assertEquals(120000, tuner.window());
+        assertEquals(1000, tuner.rtt());
+
+        tuner.onData(1);
+        assertTrue(tuner.ping(2100));
+        tuner.onData(600000);
+        assertEquals(1_000_000 - 120000, tuner.onPingAck(2100, 4100));
+        assertEquals(1_000_000, tuner.window());
+        assertEquals(1125, tuner.rtt());
+    }
+
+    @Test
+    public void shrinks()
+    {
+        ReceiveWindowTuner tuner = new ReceiveWindowTuner(65535, 1_000_000);
+        tuner.onData(100);
+        tuner.ping(0);
+        tuner.onData(500000);
+        tuner.onPingAck(0, 10);
+        assertEquals(1_000_000, tuner.window());
+
+        // peer uses only a small part of the window
+        tuner.onData(1);
+        assertTrue(tuner.ping(100));
+        tuner.onData(1000);
+        assertEquals(-500000, tuner.onPingAck(100, 110));
+        assertEquals(500000, tuner.window());
+
+        // but not below the initial window
+        for (int i = 0; i < 10; i++)
+        {
+            long now = 200 + i * 100;
+            tuner.onData(1);
+            assertTrue(tuner.ping(now));
+            tuner.onPingAck(now, now + 10);
+        }
+        assertEquals(65535, tuner.window());
+    }
+
+    @Test
+    public void pingsOncePerRoundTrip()
+    {
+        ReceiveWindowTuner tuner = new ReceiveWindowTuner(65535, 1_000_000);
+        tuner.onData(100);
+        assertTrue(tuner.ping(100));
+        tuner.onPingAck(100, 1100);
+        assertEquals(1000, tuner.rtt());
+
+        // next PING waits for a round trip after the ACK
+        tuner.onData(100);
+        assertFalse(tuner.ping(1500));
+        assertFalse(tuner.ping(2099));
+        assertTrue(tuner.ping(2100));
+    }
+
+    @Test
+    public void ignoresOtherPings()
+    {
+        ReceiveWindowTuner tuner = new ReceiveWindowTuner(65535, 1_000_000);
+        assertFalse(tuner.ping(100));       // no data yet
+
+        tuner.onData(100000);
+        assertTrue(tuner.ping(100));
+        tuner.onData(100000);
+        assertEquals(0, tuner.onPingAck(42, 1100));
+        assertEquals(65535, tuner.window());
+        assertEquals(0, tuner.rtt());
+    }
+
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class RoundRobinStreamSchedulerTest
+{
+
+    @Test
+    public void roundRobin()
+    {
+        RoundRobinStreamScheduler scheduler = new RoundRobinStreamScheduler();
+        scheduler.add(1);
+        scheduler.add(3);
+        scheduler.add(5);
+        scheduler.ready(1);
+        scheduler.ready(3);
+        scheduler.ready(5);
+
+        int[] expected = { 1, 3, 5, 1, 3, 5 };
+        for (int streamId : expected)
+        {
+            assertEquals(streamId, scheduler.select(s -> true));
+            scheduler.charge(streamId, 1000);
+        }
+
+        scheduler.blocked(3);
+        scheduler.charge(3, 1000);
+        assertEquals(1, scheduler.select(s -> true));
+        scheduler.charge(1, 1000);
+        assertEquals(5, scheduler.select(s -> true));
+    }
+
+}
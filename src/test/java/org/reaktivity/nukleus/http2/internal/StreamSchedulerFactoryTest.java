@@ -0,0 +1,95 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import java.util.Properties;
+
+import org.junit.Test;
+import org.reaktivity.nukleus.Configuration;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamSchedulerFactoryTest
+{
+
+    @Test
+    public void defaultScheduler()
+    {
+        StreamSchedulerFactory factory = factory(new Properties());
+
+        assertEquals(PriorityStreamScheduler.class, factory.newStreamScheduler("source").getClass());
+    }
+
+    @Test
+    public void configuredScheduler()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("nukleus.http2.server.stream.scheduler", "fifo");
+        properties.setProperty("nukleus.http2.server.stream.scheduler.sources", "api:round-robin, media:drr,browser:urgency");
+        StreamSchedulerFactory factory = factory(properties);
+
+        assertEquals(FifoStreamScheduler.class, factory.newStreamScheduler("source").getClass());
+        assertEquals(RoundRobinStreamScheduler.class, factory.newStreamScheduler("api").getClass());
+        assertEquals(DeficitRoundRobinStreamScheduler.class, factory.newStreamScheduler("media").getClass());
+        assertEquals(UrgencyStreamScheduler.class, factory.newStreamScheduler("browser").getClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownScheduler()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("nukleus.http2.server.stream.scheduler", "lifo");
+
+        // fails when the factory is created, not when a connection is accepted
+        factory(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveQuantum()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("nukleus.http2.server.stream.scheduler", "drr");
+        properties.setProperty("nukleus.http2.server.stream.quantum", "0");
+
+        factory(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownSourceScheduler()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("nukleus.http2.server.stream.scheduler", "drr");
+        properties.setProperty("nukleus.http2.server.stream.scheduler.sources", "media:drr,api:lifo");
+
+        // fails when the factory is created, not when a connection from the source is accepted
+        factory(properties);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sourceWithoutScheduler()
+    {
+        Properties properties = new Properties();
+        properties.setProperty("nukleus.http2.server.stream.scheduler.sources", "api");
+
+        factory(properties);
+    }
+
+    private static StreamSchedulerFactory factory(Properties properties)
+    {
+        return new StreamSchedulerFactory(new Http2Configuration(new Configuration(properties)));
+    }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UrgencyStreamSchedulerTest
+{
+
+    @Test
+    public void strictUrgency()
+    {
+        UrgencyStreamScheduler scheduler = new UrgencyStreamScheduler(100);
+        scheduler.add(1);
+        scheduler.urgency(3, 1, false);
+        scheduler.urgency(5, 7, true);
+        scheduler.ready(1);
+        scheduler.ready(3);
+        scheduler.ready(5);
+
+        assertEquals(3, scheduler.select(s -> true));
+        scheduler.charge(3, 1000);
+        assertEquals(3, scheduler.select(s -> true));
+        assertEquals(1, scheduler.select(s -> s != 3));
+        assertEquals(5, scheduler.select(s -> s == 5));
+        assertEquals(0, scheduler.select(s -> false));
+    }
+
+    @Test
+    public void incrementalRoundRobin()
+    {
+        UrgencyStreamScheduler scheduler = new UrgencyStreamScheduler(100);
+        scheduler.urgency(1, 3, true);
+        scheduler.urgency(3, 3, true);
+        scheduler.urgency(5, 3, true);
+        scheduler.ready(1);
+        scheduler.ready(3);
+        scheduler.ready(5);
+
+        int[] expected = { 1, 3, 5, 1, 3, 5 };
+        for (int streamId : expected)
+        {
+            assertEquals(streamId, scheduler.select(s -> true));
+            scheduler.charge(streamId, 1000);
+        }
+    }
+
+    @Test
+    public void nonIncrementalInStreamOrder()
+    {
+        UrgencyStreamScheduler scheduler = new UrgencyStreamScheduler(100);
+        scheduler.urgency(7, 3, true);
+        scheduler.add(5);
+        scheduler.add(1);
+        scheduler.urgency(3, 3, false);
+        scheduler.ready(7);
+        scheduler.ready(5);
+        scheduler.ready(1);
+        scheduler.ready(3);
+
+        // non-incremental streams are sent one after another, before incremental ones
+        assertEquals(1, scheduler.select(s -> true));
+        scheduler.charge(1, 1000);
+        assertEquals(1, scheduler.select(s -> true));
+        scheduler.remove(1);
+        assertEquals(3, scheduler.select(s -> true));
+        assertEquals(7, scheduler.select(s -> s == 7));
+    }
+
+    @Test
+    public void reprioritize()
+    {
+        UrgencyStreamScheduler scheduler = new UrgencyStreamScheduler(100);
+        scheduler.add(1);
+        scheduler.add(3);
+        scheduler.ready(1);
+        scheduler.ready(3);
+        scheduler.urgency(3, 0, false);
+
+        assertEquals(0, scheduler.streamUrgency(3));
+        assertEquals(3, scheduler.select(s -> true));
+    }
+
+    @Test
+    public void ready()
+    {
+        UrgencyStreamScheduler scheduler = new UrgencyStreamScheduler(100);
+        scheduler.urgency(1, 0, true);
+        scheduler.add(3);
+
+        assertEquals(0, scheduler.select(s -> true));
+
+        scheduler.ready(3);
+        scheduler.ready(3);
+        assertEquals(3, scheduler.select(s -> true));
+
+        scheduler.ready(1);
+        assertEquals(1, scheduler.select(s -> true));
+        scheduler.charge(1, 1000);
+        assertEquals(1, scheduler.select(s -> true));
+
+        scheduler.blocked(1);
+        scheduler.blocked(1);
+        assertEquals(3, scheduler.select(s -> true));
+
+        scheduler.remove(3);
+        assertEquals(0, scheduler.select(s -> true));
+    }
+
+    @Test
+    public void maxNodes()
+    {
+        UrgencyStreamScheduler scheduler = new UrgencyStreamScheduler(1);
+        scheduler.urgency(1, 2, false);
+        scheduler.urgency(3, 2, false);
+        scheduler.add(5);
+
+        assertEquals(-1, scheduler.streamUrgency(3));
+        assertEquals(UrgencyStreamScheduler.DEFAULT_URGENCY, scheduler.streamUrgency(5));
+        assertEquals(2, scheduler.size());
+    }
+
+    @Test
+    public void ignoresDependencies()
+    {
+        UrgencyStreamScheduler scheduler = new UrgencyStreamScheduler(100);
+        scheduler.priority(3, 1, 256, true);
+
+        assertEquals(-1, scheduler.streamUrgency(3));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void parsePriority()
+    {
+        assertPriority("", 3, false);
+        assertPriority("u=5, i", 5, true);
+        assertPriority("i,u=0", 0, true);
+        assertPriority("u=1, i=?0", 1, false);
+        assertPriority("i=?1;a=b, u=6", 6, true);
+        assertPriority("u=8, x=1, i=1", 3, false);
+        assertPriority("urgency=1, u=12", 3, false);
+    }
+
+    private static void assertPriority(String value, int urgency, boolean incremental)
+    {
+        DirectBuffer buffer = new UnsafeBuffer(("xx" + value).getBytes(US_ASCII));
+        int priority = UrgencyStreamScheduler.parsePriority(buffer, 2, value.length());
+        assertEquals(urgency, UrgencyStreamScheduler.urgency(priority));
+        if (incremental)
+        {
+            assertTrue(UrgencyStreamScheduler.incremental(priority));
+        }
+        else
+        {
+            assertFalse(UrgencyStreamScheduler.incremental(priority));
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WriteFlusherTest
+{
+    private int runs;
+
+    @Test
+    public void runsOncePerRegistration()
+    {
+        WriteFlusher flusher = new WriteFlusher();
+        flusher.register(() -> runs++);
+        flusher.register(() -> runs++);
+
+        assertEquals(2, flusher.process());
+        assertEquals(2, runs);
+        assertEquals(0, flusher.process());
+    }
+
+    @Test
+    public void registersAgainWhileRunning()
+    {
+        WriteFlusher flusher = new WriteFlusher();
+        Runnable[] task = new Runnable[1];
+        task[0] = () ->
+        {
+            if (++runs < 3)
+            {
+                flusher.register(task[0]);
+            }
+        };
+        flusher.register(task[0]);
+
+        // the task that registers again runs in the next duty cycle
+        assertEquals(1, flusher.process());
+        assertEquals(1, flusher.process());
+        assertEquals(1, flusher.process());
+        assertEquals(0, flusher.process());
+        assertEquals(3, runs);
+    }
+
+}
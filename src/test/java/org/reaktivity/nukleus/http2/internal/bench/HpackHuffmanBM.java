@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal.bench;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reaktivity.nukleus.http2.internal.types.stream.HpackHuffman;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(3)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@OutputTimeUnit(SECONDS)
+public class HpackHuffmanBM
+{
+    // typical request header values that browsers Huffman encode
+    private static final String[] VALUES =
+    {
+        "www.example.com",
+        "/static/js/app.5f3c2a1b.js?v=20170901",
+        "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/61.0.3163.100 Safari/537.36",
+        "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8",
+        "gzip, deflate, br",
+        "en-US,en;q=0.8",
+        "_ga=GA1.2.1234567890.1504567890; _gid=GA1.2.987654321.1504567890; session=a1b2c3d4e5f6"
+    };
+
+    private final DirectBuffer[] encoded = new DirectBuffer[VALUES.length];
+    private final MutableDirectBuffer decoded = new UnsafeBuffer(new byte[4096]);
+
+    {
+        for (int i = 0; i < VALUES.length; i++)
+        {
+            DirectBuffer value = new UnsafeBuffer(VALUES[i].getBytes(UTF_8));
+            MutableDirectBuffer buffer = new UnsafeBuffer(new byte[HpackHuffman.encodedSize(value, 0, value.capacity())]);
+            HpackHuffman.encode(value, buffer);
+            encoded[i] = buffer;
+        }
+    }
+
+    @Benchmark
+    public int decode()
+    {
+        int length = 0;
+        for (int i = 0; i < encoded.length; i++)
+        {
+            length += HpackHuffman.decode(encoded[i], decoded);
+        }
+        return length;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(HpackHuffmanBM.class.getSimpleName())
+                .forks(0)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -33,7 +33,8 @@ public class ConnectionManagementIT
     private final K3poRule k3po = new K3poRule()
             .addScriptRoot("route", "org/reaktivity/specification/nukleus/http2/control/route")
             .addScriptRoot("spec", "org/reaktivity/specification/http2/rfc7540/connection.management")
-            .addScriptRoot("nukleus", "org/reaktivity/specification/nukleus/http2/streams/rfc7540/connection.management");
+            .addScriptRoot("nukleus", "org/reaktivity/specification/nukleus/http2/streams/rfc7540/connection.management")
+            .addScriptRoot("local", "org/reaktivity/nukleus/http2/internal/streams/server/rfc7540/connection.management");
 
     private final TestRule timeout = new DisableOnDebug(new Timeout(10, SECONDS));
 
@@ -248,4 +249,33 @@ public class ConnectionManagementIT
         k3po.finish();
     }
 
+    @Test
+    @Specification({
+            "${local}/route.headers/controller",
+            "${local}/route.header.matched/client",
+            "${local}/route.header.matched/server" })
+    public void routeHeaderMatched() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${local}/route.headers/controller",
+            "${local}/route.header.not.matched/client" })
+    public void routeHeaderNotMatched() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/push.promise.no.route/client",
+            "${local}/push.promise.no.route/server" })
+    public void pushPromiseNoRoute() throws Exception
+    {
+        k3po.finish();
+    }
+
 }
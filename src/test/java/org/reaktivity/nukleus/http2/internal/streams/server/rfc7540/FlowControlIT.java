@@ -23,6 +23,7 @@ import org.junit.rules.Timeout;
 import org.kaazing.k3po.junit.annotation.Specification;
 import org.kaazing.k3po.junit.rules.K3poRule;
 import org.reaktivity.reaktor.test.ReaktorRule;
+import org.reaktivity.reaktor.test.annotation.Configure;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.rules.RuleChain.outerRule;
@@ -32,7 +33,8 @@ public class FlowControlIT
     private final K3poRule k3po = new K3poRule()
             .addScriptRoot("route", "org/reaktivity/specification/nukleus/http2/control/route/")
             .addScriptRoot("spec", "org/reaktivity/specification/http2/rfc7540/flow.control/")
-            .addScriptRoot("nukleus", "org/reaktivity/specification/nukleus/http2/streams/rfc7540/flow.control");
+            .addScriptRoot("nukleus", "org/reaktivity/specification/nukleus/http2/streams/rfc7540/flow.control")
+            .addScriptRoot("local", "org/reaktivity/nukleus/http2/internal/streams/server/rfc7540/flow.control");
 
     private final TestRule timeout = new DisableOnDebug(new Timeout(10, SECONDS));
 
@@ -57,4 +59,93 @@ public class FlowControlIT
         k3po.finish();
     }
 
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/window.update.minimum/client",
+            "${local}/window.update.minimum/server" })
+    @Configure(name = "nukleus.http2.server.window.update.minimum", value = "16384")
+    public void windowUpdateMinimum() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/initial.window.size/client",
+            "${local}/initial.window.size/server" })
+    @Configure(name = "nukleus.http2.server.initial.window.size", value = "8192")
+    public void initialWindowSize() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/initial.window.size.capped/client",
+            "${local}/initial.window.size/server" })
+    @Configure(name = "nukleus.http2.server.initial.window.size", value = "1048576")
+    public void initialWindowSizeCapped() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/refused.stream/client",
+            "${local}/refused.stream/server" })
+    @Configure(name = "nukleus.http2.server.initial.window.size", value = "8192")
+    @Configure(name = "reaktor.buffer.pool.capacity", value = "65536")
+    public void refusedStream() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/connection.window.size/client",
+            "${local}/connection.window.size/server" })
+    @Configure(name = "nukleus.http2.server.connection.window.size", value = "1048576")
+    public void connectionWindowSize() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/connection.window.size.capped/client",
+            "${local}/connection.window.size/server" })
+    @Configure(name = "nukleus.http2.server.connection.window.size", value = "16777216")
+    public void connectionWindowSizeCapped() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/queued.headers.stream.reset/client",
+            "${local}/queued.headers.stream.reset/server" })
+    @Configure(name = "nukleus.http2.server.hpack.indexing", value = "true")
+    public void queuedHeadersStreamReset() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/queued.headers.no.slot/client",
+            "${local}/queued.headers.no.slot/server" })
+    @Configure(name = "reaktor.buffer.slot.capacity", value = "256")
+    public void queuedHeadersNoSlot() throws Exception
+    {
+        k3po.finish();
+    }
+
 }
@@ -23,6 +23,7 @@ import org.junit.rules.Timeout;
 import org.kaazing.k3po.junit.annotation.Specification;
 import org.kaazing.k3po.junit.rules.K3poRule;
 import org.reaktivity.reaktor.test.ReaktorRule;
+import org.reaktivity.reaktor.test.annotation.Configure;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.rules.RuleChain.outerRule;
@@ -32,7 +33,8 @@ public class SettingsIT
     private final K3poRule k3po = new K3poRule()
             .addScriptRoot("route", "org/reaktivity/specification/nukleus/http2/control/route")
             .addScriptRoot("spec", "org/reaktivity/specification/http2/rfc7540/settings")
-            .addScriptRoot("nukleus", "org/reaktivity/specification/nukleus/http2/streams/rfc7540/connection.management");
+            .addScriptRoot("nukleus", "org/reaktivity/specification/nukleus/http2/streams/rfc7540/connection.management")
+            .addScriptRoot("local", "org/reaktivity/nukleus/http2/internal/streams/server/rfc7540/settings");
 
     private final TestRule timeout = new DisableOnDebug(new Timeout(10, SECONDS));
 
@@ -57,4 +59,46 @@ public class SettingsIT
         k3po.finish();
     }
 
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/max.header.list.size/client",
+            "${nukleus}/http.get.exchange/server" })
+    @Configure(name = "nukleus.http2.server.max.header.list.size", value = "8192")
+    public void maxHeaderListSize() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/encoder.table.size/client",
+            "${nukleus}/http.get.exchange/server" })
+    @Configure(name = "nukleus.http2.server.hpack.encoder.table.size", value = "0")
+    public void encoderTableSize() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/request.header.list.too.large/client" })
+    @Configure(name = "nukleus.http2.server.max.header.list.size", value = "128")
+    public void requestHeaderListTooLarge() throws Exception
+    {
+        k3po.finish();
+    }
+
+    @Test
+    @Specification({
+            "${route}/server/controller",
+            "${local}/response.header.list.too.large/client",
+            "${local}/response.header.list.too.large/server" })
+    public void responseHeaderListTooLarge() throws Exception
+    {
+        k3po.finish();
+    }
+
 }
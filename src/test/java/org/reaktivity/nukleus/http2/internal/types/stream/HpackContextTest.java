@@ -15,8 +15,10 @@
  */
 package org.reaktivity.nukleus.http2.internal.types.stream;
 
+import org.agrona.concurrent.UnsafeBuffer;
 import org.junit.Test;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 
 public class HpackContextTest
@@ -109,6 +111,19 @@ public class HpackContextTest
         assertEquals(16, context.index("accept-encoding", "gzip, deflate"));
     }
 
+    @Test
+    public void encodeStaticMissing()
+    {
+        HpackContext context = new HpackContext();
+
+        assertEquals(-1, context.index("x-custom"));
+        assertEquals(-1, context.index(""));
+        assertEquals(-1, context.index(":method", "PUT"));
+        assertEquals(-1, context.index(":status", "201"));
+        assertEquals(-1, context.index("accept-encoding", "gzip"));
+        assertEquals(-1, context.index("age", ""));
+    }
+
     @Test
     public void encodeDynamic()
     {
@@ -169,4 +184,124 @@ public class HpackContextTest
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void updateSize()
+    {
+        HpackContext context = new HpackContext(4096, true);
+        context.add("name1", "value1");             // 43 bytes
+        context.add("name2", "value2");
+        context.add("name3", "value3");
+
+        // only the oldest entry is evicted
+        context.updateSize(100);
+        assertEquals(100, context.maxTableSize());
+        assertEquals(62, context.index("name3", "value3"));
+        assertEquals(63, context.index("name2", "value2"));
+        assertEquals(-1, context.index("name1", "value1"));
+
+        context.updateSize(0);
+        assertEquals(-1, context.index("name3"));
+        assertEquals(0, context.tableSize);
+    }
+
+    @Test
+    public void ringWrapAround()
+    {
+        HpackContext context = new HpackContext(100, false);
+        for (int i = 0; i < 100; i++)
+        {
+            context.add("name" + i % 10, "value" + i);      // 43 or 44 bytes, so two entries at most
+
+            assertEquals(Math.min(i + 1, 2), context.size());
+            assertEquals("name" + i % 10, context.name(62));
+            assertEquals("value" + i, context.value(62));
+        }
+        assertEquals("name8", context.name(63));
+        assertEquals("value98", context.value(63));
+    }
+
+    // RFC 7541 4.4 a new entry can refer to the name of an entry that is evicted for it
+    @Test
+    public void addEvictedName()
+    {
+        HpackContext context = new HpackContext(60, false);
+        context.add("custom-name", "value1");
+
+        context.add(context.nameBuffer(62), new UnsafeBuffer("value2".getBytes(UTF_8)));
+        assertEquals(1, context.size());
+        assertEquals("custom-name", context.name(62));
+        assertEquals("value2", context.value(62));
+    }
+
+    @Test
+    public void growSize()
+    {
+        HpackContext context = new HpackContext(100, true);
+        context.add("name1", "value1");
+        context.add("name2", "value2");
+
+        context.updateSize(4096);
+        context.add("name3", "value3");
+        assertEquals(3, context.size());
+        assertEquals(62, context.index("name3", "value3"));
+        assertEquals(63, context.index("name2", "value2"));
+        assertEquals(64, context.index("name1", "value1"));
+        assertEquals("name1", context.name(64));
+    }
+
+    @Test
+    public void shrinkSize()
+    {
+        HpackContext context = new HpackContext(4096, true);
+        context.add("name1", "value1");
+        context.add("name2", "value2");
+        context.add("name3", "value3");
+
+        // storage shrinks with the table, and keeps the entries that are not evicted
+        context.updateSize(100);
+        assertEquals(200, context.capacity());
+        assertEquals(62, context.index("name3", "value3"));
+        assertEquals(63, context.index("name2", "value2"));
+
+        context.add("name4", "value4");
+        assertEquals(2, context.size());
+        assertEquals(62, context.index("name4", "value4"));
+        assertEquals(63, context.index("name3", "value3"));
+        assertEquals("name3", context.name(63));
+    }
+
+    // Lookups of repeating names and values agree with a scan of the table after evictions
+    @Test
+    public void encodeRepeating()
+    {
+        HpackContext context = new HpackContext(400, true);
+        for (int i = 0; i < 1000; i++)
+        {
+            context.add("name" + i % 7, "value" + i % 5);
+
+            for (int n = 0; n < 7; n++)
+            {
+                String name = "name" + n;
+                assertEquals(scan(context, name, null), context.index(name));
+                for (int v = 0; v < 5; v++)
+                {
+                    String value = "value" + v;
+                    assertEquals(scan(context, name, value), context.index(name, value));
+                }
+            }
+        }
+    }
+
+    private static int scan(HpackContext context, String name, String value)
+    {
+        for (int index = 62; context.valid(index); index++)
+        {
+            if (name.equals(context.name(index)) && (value == null || value.equals(context.value(index))))
+            {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+}
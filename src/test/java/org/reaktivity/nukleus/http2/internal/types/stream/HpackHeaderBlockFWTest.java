@@ -348,7 +348,7 @@ public class HpackHeaderBlockFWTest
         assertEquals("Mon, 21 Oct 2013 20:13:21 GMT", headers.get("date"));
         assertEquals("https://www.example.com", headers.get("location"));
 
-        assertEquals(4, context.table.size());
+        assertEquals(4, context.size());
         assertEquals(222, context.tableSize);
         assertEquals("location", context.name(62));
         assertEquals("https://www.example.com", context.value(62));
@@ -382,7 +382,7 @@ public class HpackHeaderBlockFWTest
         assertEquals("Mon, 21 Oct 2013 20:13:21 GMT", headers.get("date"));
         assertEquals("https://www.example.com", headers.get("location"));
 
-        assertEquals(4, context.table.size());
+        assertEquals(4, context.size());
         assertEquals(222, context.tableSize);
         assertEquals(":status", context.name(62));
         assertEquals("307", context.value(62));
@@ -424,7 +424,7 @@ public class HpackHeaderBlockFWTest
         assertEquals("gzip", headers.get("content-encoding"));
         assertEquals("foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1", headers.get("set-cookie"));
 
-        assertEquals(3, context.table.size());
+        assertEquals(3, context.size());
         assertEquals(215, context.tableSize);
         assertEquals("set-cookie", context.name(62));
         assertEquals("foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1", context.value(62));
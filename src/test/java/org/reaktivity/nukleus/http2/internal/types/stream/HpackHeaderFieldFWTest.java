@@ -258,4 +258,21 @@ public class HpackHeaderFieldFWTest
         assertEquals("GET", context.value(index));
     }
 
+    @Test
+    public void encodeTableSize()
+    {
+        byte[] bytes = new byte[100];
+        MutableDirectBuffer buf = new UnsafeBuffer(bytes);
+
+        HpackHeaderFieldFW fw = new HpackHeaderFieldFW.Builder()
+                .wrap(buf, 1, buf.capacity())
+                .tableSize(4096)
+                .build();
+
+        assertEquals(4, fw.limit());
+        assertEquals((byte) 0x3f, bytes[1]);            // 001 + 11111, then 4096 - 31 in 2 bytes
+        assertEquals(HeaderFieldType.UPDATE, fw.type());
+        assertEquals(4096, fw.tableSize());
+    }
+
 }
@@ -19,8 +19,11 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 
+import java.util.Arrays;
+
 import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.junit.Test;
@@ -91,4 +94,50 @@ public class HpackHuffmanTest
         assertEquals(expectedBuf, encodedBuf);
     }
 
-}
\ No newline at end of file
+    // Decodes strings longer than the initial capacity of a growable buffer
+    @Test
+    public void decodeLarge()
+    {
+        byte[] bytes = new byte[10000];
+        Arrays.fill(bytes, (byte) 'a');
+        DirectBuffer buf = new UnsafeBuffer(bytes);
+        MutableDirectBuffer encodedBuf = new UnsafeBuffer(new byte[HpackHuffman.encodedSize(buf, 0, buf.capacity())]);
+        HpackHuffman.encode(buf, encodedBuf);
+
+        MutableDirectBuffer dst = new ExpandableArrayBuffer(16);
+        int length = HpackHuffman.decode(encodedBuf, dst);
+        assertEquals(bytes.length, length);
+        assertEquals(buf, new UnsafeBuffer(dst, 0, length));
+    }
+
+    // Round trips every octet, so that every state transition emitting a symbol is exercised
+    @Test
+    public void decodeAllSymbols()
+    {
+        byte[] bytes = new byte[256 * 3];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) (i * 7);
+        }
+        DirectBuffer buf = new UnsafeBuffer(bytes);
+        MutableDirectBuffer encodedBuf = new UnsafeBuffer(new byte[HpackHuffman.encodedSize(buf, 0, buf.capacity())]);
+        HpackHuffman.encode(buf, encodedBuf);
+
+        MutableDirectBuffer dst = new UnsafeBuffer(new byte[bytes.length]);
+        int length = HpackHuffman.decode(encodedBuf, dst);
+        assertEquals(bytes.length, length);
+        assertEquals(buf, dst);
+    }
+
+    // RFC 7541 5.2 padding longer than 7 bits, padding not of EOS bits, and EOS are errors
+    @Test
+    public void decodeInvalid()
+    {
+        MutableDirectBuffer dst = new UnsafeBuffer(new byte[4096]);
+        assertEquals(-1, HpackHuffman.decode(new UnsafeBuffer(BitUtil.fromHex("6402ff")), dst));
+        assertEquals(-1, HpackHuffman.decode(new UnsafeBuffer(BitUtil.fromHex("64")), dst));
+        assertEquals(-1, HpackHuffman.decode(new UnsafeBuffer(BitUtil.fromHex("fffffffc")), dst));
+        assertEquals(0, HpackHuffman.decode(new UnsafeBuffer(new byte[0]), dst));
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.reaktivity.nukleus.http2.internal.types.stream;
 
+import org.agrona.BitUtil;
 import org.agrona.DirectBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
@@ -25,6 +26,7 @@ import java.util.stream.IntStream;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class HpackStringFWTest
 {
@@ -142,4 +144,44 @@ public class HpackStringFWTest
         assertEquals(value.length() + 4, fw.limit());
     }
 
-}
\ No newline at end of file
+    // RFC 7541 C.4.1
+    @Test
+    public void encodeHuffman()
+    {
+        DirectBuffer valueBuf = new UnsafeBuffer("www.example.com".getBytes(US_ASCII));
+        byte[] bytes = new byte[100];
+
+        MutableDirectBuffer buffer = new UnsafeBuffer(bytes);
+        HpackStringFW fw = new HpackStringFW.Builder()
+                .wrap(buffer, 1, buffer.capacity())
+                .huffman()
+                .string(valueBuf, 0, valueBuf.capacity())
+                .build();
+        assertEquals((byte) 0x8c, bytes[1]);
+
+        assertTrue(fw.huffman());
+        assertEquals(new UnsafeBuffer(BitUtil.fromHex("f1e3c2e5f23a6ba0ab90f4ff")), fw.payload());
+        assertEquals(14, fw.limit());
+    }
+
+    // Huffman encoding is not used when it is not shorter
+    @Test
+    public void encodeHuffmanLonger()
+    {
+        DirectBuffer valueBuf = new UnsafeBuffer("{}".getBytes(US_ASCII));
+        byte[] bytes = new byte[100];
+
+        MutableDirectBuffer buffer = new UnsafeBuffer(bytes);
+        HpackStringFW fw = new HpackStringFW.Builder()
+                .wrap(buffer, 1, buffer.capacity())
+                .huffman()
+                .string(valueBuf, 0, valueBuf.capacity())
+                .build();
+        assertEquals((byte) 0x02, bytes[1]);
+
+        assertFalse(fw.huffman());
+        assertEquals(valueBuf, fw.payload());
+        assertEquals(4, fw.limit());
+    }
+
+}
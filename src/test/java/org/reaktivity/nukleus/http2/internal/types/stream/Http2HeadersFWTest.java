@@ -67,6 +67,51 @@ public class Http2HeadersFWTest
         assertEquals("127.0.0.1:8080", headers.get(":authority"));
     }
 
+    @Test
+    public void decodePriority()
+    {
+        byte[] bytes = new byte[]
+        {
+                0x7f, 0x7f,
+                // HEADERS frame begin (PADDED, PRIORITY, END_HEADERS)
+                0x00, 0x00, 0x08, 0x01, 0x2c, 0x00, 0x00, 0x00, 0x05,
+                0x01,                                           // pad length
+                (byte) 0x80, 0x00, 0x00, 0x03, (byte) 0xff,     // exclusive, stream dependency, weight
+                (byte) 0x82,                                    // header block
+                0x00,                                           // padding
+                // HEADERS frame end
+                0x7f, 0x7f
+        };
+
+        DirectBuffer buffer = new UnsafeBuffer(bytes);
+        Http2HeadersFW fw = new Http2HeadersFW().wrap(buffer, 2, buffer.capacity());  // non-zero offset
+        assertEquals(19, fw.limit());
+        assertTrue(fw.priority());
+        assertTrue(fw.padded());
+        assertTrue(fw.exclusive());
+        assertEquals(3, fw.parentStream());
+        assertEquals(256, fw.weight());
+        assertEquals(1, fw.dataLength());
+        assertEquals((byte) 0x82, buffer.getByte(fw.dataOffset()));
+    }
+
+    @Test
+    public void decodeDefaultPriority()
+    {
+        byte[] bytes = new byte[]
+        {
+                // HEADERS frame (END_HEADERS)
+                0x00, 0x00, 0x01, 0x01, 0x04, 0x00, 0x00, 0x00, 0x05, (byte) 0x82
+        };
+
+        DirectBuffer buffer = new UnsafeBuffer(bytes);
+        Http2HeadersFW fw = new Http2HeadersFW().wrap(buffer, 0, buffer.capacity());
+        assertFalse(fw.priority());
+        assertFalse(fw.exclusive());
+        assertEquals(0, fw.parentStream());
+        assertEquals(16, fw.weight());
+    }
+
     @Test
     public void encode()
     {
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2016-2017 The Reaktivity Project
+ *
+ * The Reaktivity Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package org.reaktivity.nukleus.http2.internal.types.stream;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.reaktivity.nukleus.http2.internal.types.stream.Http2FrameType.PRIORITY_UPDATE;
+
+public class Http2PriorityUpdateFWTest
+{
+
+    @Test
+    public void encode()
+    {
+        byte[] bytes = new byte[100];
+        MutableDirectBuffer buf = new UnsafeBuffer(bytes);
+
+        Http2PriorityUpdateFW priorityUpdate = new Http2PriorityUpdateFW.Builder()
+                .wrap(buf, 1, buf.capacity())       // non-zero offset
+                .prioritizedStream(3)
+                .priority("u=5, i")
+                .build();
+
+        assertEquals(10, priorityUpdate.payloadLength());
+        assertEquals(1, priorityUpdate.offset());
+        assertEquals(20, priorityUpdate.limit());
+        assertEquals(PRIORITY_UPDATE, priorityUpdate.type());
+        assertEquals(0, priorityUpdate.streamId());
+        assertEquals(3, priorityUpdate.prioritizedStream());
+        assertEquals(6, priorityUpdate.priorityLength());
+        assertEquals("u=5, i", buf.getStringWithoutLengthUtf8(priorityUpdate.priorityOffset(), priorityUpdate.priorityLength()));
+
+        Http2PriorityUpdateFW decoded = new Http2PriorityUpdateFW().wrap(buf, 1, buf.capacity());
+        assertEquals(3, decoded.prioritizedStream());
+        assertEquals(6, decoded.priorityLength());
+    }
+
+}